@@ -4,9 +4,13 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 @EnableAsync
+@EnableScheduling
 @SpringBootApplication
-@MapperScan("com.example.tran.mapper")
+// sqlSessionTemplateRef 显式引用，AOT 生成的代码不保留按类型自动注入的设置
+@MapperScan(basePackages = "com.example.tran.mapper", sqlSessionTemplateRef = "sqlSessionTemplate",
+        lazyInitialization = "${mybatis-plus.lazy-initialization:false}")
 public class SpringTranApplication {
 
     public static void main(String[] args) {
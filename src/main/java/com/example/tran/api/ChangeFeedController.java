@@ -0,0 +1,55 @@
+package com.example.tran.api;
+
+import com.example.tran.change.ChangeBatch;
+import com.example.tran.change.ChangeFeed;
+import com.example.tran.change.ChangeStreams;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * user / user2 的增量变更，替代轮询全表
+ */
+@RestController
+@RequestMapping
+@RequiredArgsConstructor
+public class ChangeFeedController {
+
+    private final ChangeFeed changeFeed;
+    private final ChangeStreams changeStreams;
+
+    /**
+     * 长轮询：since 之后有变更立即返回，否则最多等待 timeout 毫秒后返回空结果
+     */
+    @GetMapping("/changes")
+    public DeferredResult<ChangeBatch> poll(@RequestParam(defaultValue = "0") long since,
+                                            @RequestParam(required = false) String table,
+                                            @RequestParam(defaultValue = "500") int limit,
+                                            @RequestParam(defaultValue = "30000") long timeout) {
+        final DeferredResult<ChangeBatch> result = new DeferredResult<>(timeout, () -> changeFeed.read(since, table, limit));
+        final Runnable unsubscribe = changeFeed.subscribe(record -> {
+            if (record.getSeq() > since && (table == null || table.equals(record.getTable()))) {
+                result.setResult(changeFeed.read(since, table, limit));
+            }
+        });
+        result.onCompletion(unsubscribe);
+        // 订阅之后再查一次，覆盖订阅前已经提交的变更
+        final ChangeBatch batch = changeFeed.read(since, table, limit);
+        if (!batch.isEmpty()) {
+            result.setResult(batch);
+        }
+        return result;
+    }
+
+    @GetMapping(path = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(defaultValue = "0") long since,
+                             @RequestParam(required = false) String table,
+                             @RequestParam(defaultValue = "1800000") long timeout) {
+        return changeStreams.open(since, table, timeout);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.tran.api;
+
+import com.example.tran.codec.MappedSpill;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 落盘结果按行输出 NDJSON
+ * <p>
+ * 输出在异步线程里执行，客户端提前断开或超时时可能根本不会执行，所以文件在请求结束时删除，而不只靠输出完成后的 close
+ */
+final class SpillResponses {
+
+    private SpillResponses() {
+    }
+
+    static <T> StreamingResponseBody ndjson(MappedSpill<T> rows, ObjectMapper objectMapper, WebRequest request) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(rows, new CallableProcessingInterceptor() {
+            @Override
+            public <C> void afterCompletion(NativeWebRequest request, Callable<C> task) {
+                rows.close();
+            }
+        });
+        return out -> {
+            try (rows) {
+                for (T row : rows) {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                }
+            }
+        };
+    }
+}
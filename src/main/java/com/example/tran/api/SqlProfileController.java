@@ -0,0 +1,30 @@
+package com.example.tran.api;
+
+import com.example.tran.profile.SqlProfiler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping
+@RequiredArgsConstructor
+public class SqlProfileController {
+
+    private final SqlProfiler sqlProfiler;
+
+    @GetMapping("/sql/profile")
+    public ResponseEntity<Map<String, Object>> profile() {
+        return ResponseEntity.ok(sqlProfiler.snapshot());
+    }
+
+    @DeleteMapping("/sql/profile")
+    public ResponseEntity<String> reset() {
+        sqlProfiler.reset();
+        return ResponseEntity.ok("success");
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.tran.api;
+
+import com.example.tran.trace.Span;
+import com.example.tran.trace.SpanCollector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping
+@RequiredArgsConstructor
+public class TraceController {
+
+    private final SpanCollector spanCollector;
+
+    @GetMapping("/traces")
+    public ResponseEntity<List<Span>> recent(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(spanCollector.recentRoots(limit));
+    }
+
+    @GetMapping("/traces/{traceId}")
+    public ResponseEntity<List<Span>> trace(@PathVariable String traceId) {
+        return ResponseEntity.ok(spanCollector.trace(traceId));
+    }
+}
@@ -1,14 +1,30 @@
 package com.example.tran.api;
 
+import com.example.tran.change.TableVersions;
+import com.example.tran.codec.MappedSpill;
+import com.example.tran.columnar.ColumnarTable;
 import com.example.tran.entity.User2;
+import com.example.tran.service.ShardedUserService;
 import com.example.tran.service.User2Service;
+import com.example.tran.service.UserSnapshotService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.IntSummaryStatistics;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 @RestController
 @RequestMapping
@@ -16,9 +32,62 @@ import java.util.List;
 public class User2Controller {
 
     private final User2Service user2Service;
+    private final UserSnapshotService userSnapshotService;
+    private final ObjectMapper objectMapper;
+    private final TableVersions tableVersions;
+    private final ShardedUserService shardedUserService;
 
     @GetMapping("/user2/list")
-    public ResponseEntity<List<User2>> list() {
-        return ResponseEntity.ok(user2Service.findAll());
+    public ResponseEntity<List<User2>> list(WebRequest request) {
+        // 版本没变直接 304，不查库也不序列化
+        final String etag = tableVersions.etag(User2.class);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .body(user2Service.findAllCached());
+    }
+
+    /**
+     * 全表导出，先落盘再按行输出 NDJSON，不在堆上保留整表
+     */
+    @GetMapping("/user2/export")
+    public ResponseEntity<StreamingResponseBody> export(WebRequest request) {
+        final MappedSpill<User2> rows = user2Service.findAllSpilled();
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(SpillResponses.ndjson(rows, objectMapper, request));
+    }
+
+    /**
+     * 跨分片按 id 升序的游标分页，下一页传入本页最后一个 id，limit 为 1 ~ 1000
+     */
+    @GetMapping("/user2/sharded")
+    public ResponseEntity<List<User2>> sharded(@RequestParam(required = false) Long afterId,
+                                            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(shardedUserService.user2().listAfter(afterId, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/user2/stats/age-histogram")
+    public ResponseEntity<SortedMap<Integer, Long>> ageHistogram(@RequestParam(defaultValue = "10") int width) {
+        final ColumnarTable table = userSnapshotService.user2();
+        return ResponseEntity.ok(table.ageHistogram(table.all(), width));
+    }
+
+    @GetMapping("/user2/stats/age")
+    public ResponseEntity<IntSummaryStatistics> ageStatistics() {
+        final ColumnarTable table = userSnapshotService.user2();
+        return ResponseEntity.ok(table.ageStatistics(table.all()));
+    }
+
+    @GetMapping("/user2/stats/email-domain")
+    public ResponseEntity<Map<String, Long>> emailDomains() {
+        final ColumnarTable table = userSnapshotService.user2();
+        return ResponseEntity.ok(table.countByEmailDomain(table.all()));
     }
 }
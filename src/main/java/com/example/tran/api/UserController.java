@@ -1,14 +1,33 @@
 package com.example.tran.api;
 
+import com.example.tran.codec.MappedSpill;
+import com.example.tran.columnar.ColumnarTable;
 import com.example.tran.entity.User;
+import com.example.tran.service.ShardedUserService;
 import com.example.tran.service.UserService;
+import com.example.tran.service.UserSnapshotService;
+import com.example.tran.service.UserWriteBehindService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.IntSummaryStatistics;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 @RestController
 @RequestMapping
@@ -16,10 +35,52 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserSnapshotService userSnapshotService;
+    private final ObjectMapper objectMapper;
+    private final ShardedUserService shardedUserService;
+    private final UserWriteBehindService userWriteBehindService;
 
     @GetMapping("/user/list")
-    public ResponseEntity<List<User>> list() {
-        return ResponseEntity.ok(userService.findAll());
+    public ResponseEntity<List<User>> list(WebRequest request) {
+        // 版本没变直接 304，不查库也不序列化
+        final String etag = userWriteBehindService.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .body(userWriteBehindService.findAll());
+    }
+
+    @GetMapping("/user/{id:\\d+}")
+    public ResponseEntity<User> get(@PathVariable long id) {
+        final User user = userWriteBehindService.getById(id);
+        return user == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(user);
+    }
+
+    /**
+     * 按 id 更新，请求体中为 null 的字段不修改；开启写缓冲时先进缓冲，定时批量落库
+     */
+    @PutMapping("/user/{id:\\d+}")
+    public ResponseEntity<Void> update(@PathVariable long id, @RequestBody User user) {
+        user.setId(id);
+        try {
+            userWriteBehindService.update(user);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 全表导出，先落盘再按行输出 NDJSON，不在堆上保留整表
+     */
+    @GetMapping("/user/export")
+    public ResponseEntity<StreamingResponseBody> export(WebRequest request) {
+        final MappedSpill<User> rows = userService.findAllSpilled();
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(SpillResponses.ndjson(rows, objectMapper, request));
     }
 
     @GetMapping("/user/check")
@@ -27,4 +88,35 @@ public class UserController {
         userService.check();
         return ResponseEntity.ok("success");
     }
+
+    /**
+     * 跨分片按 id 升序的游标分页，下一页传入本页最后一个 id，limit 为 1 ~ 1000
+     */
+    @GetMapping("/user/sharded")
+    public ResponseEntity<List<User>> sharded(@RequestParam(required = false) Long afterId,
+                                           @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(shardedUserService.user().listAfter(afterId, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/user/stats/age-histogram")
+    public ResponseEntity<SortedMap<Integer, Long>> ageHistogram(@RequestParam(defaultValue = "10") int width) {
+        final ColumnarTable table = userSnapshotService.user();
+        return ResponseEntity.ok(table.ageHistogram(table.all(), width));
+    }
+
+    @GetMapping("/user/stats/age")
+    public ResponseEntity<IntSummaryStatistics> ageStatistics() {
+        final ColumnarTable table = userSnapshotService.user();
+        return ResponseEntity.ok(table.ageStatistics(table.all()));
+    }
+
+    @GetMapping("/user/stats/email-domain")
+    public ResponseEntity<Map<String, Long>> emailDomains() {
+        final ColumnarTable table = userSnapshotService.user();
+        return ResponseEntity.ok(table.countByEmailDomain(table.all()));
+    }
 }
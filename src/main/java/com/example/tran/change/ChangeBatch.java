@@ -0,0 +1,30 @@
+package com.example.tran.change;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 一次增量读取的结果
+ */
+@Getter
+@AllArgsConstructor
+public class ChangeBatch {
+
+    /**
+     * 下次读取时传入的 since
+     */
+    private final long next;
+
+    /**
+     * since 之后的部分记录已经被淘汰，消费方需要先全量同步（如 /user/list）再从 next 继续
+     */
+    private final boolean reset;
+
+    private final List<ChangeRecord> changes;
+
+    public boolean isEmpty() {
+        return !reset && changes.isEmpty();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.tran.change;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的变更日志：写操作所在事务提交后追加，按 seq 增量读取；超过容量时淘汰最旧的记录
+ * <p>
+ * 订阅回调在追加时同步调用（持有追加锁），回调里不能做阻塞操作
+ */
+@Component
+public class ChangeFeed {
+
+    private final int capacity;
+    private final ConcurrentSkipListMap<Long, ChangeRecord> log = new ConcurrentSkipListMap<>();
+    private final List<Consumer<ChangeRecord>> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile long lastSeq;
+    /**
+     * 已淘汰的最大 seq
+     */
+    private volatile long evictedSeq;
+
+    public ChangeFeed(@Value("${tran.change-feed.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChange(TableChangeEvent event) {
+        append(event);
+    }
+
+    synchronized ChangeRecord append(TableChangeEvent event) {
+        final ChangeRecord record = new ChangeRecord(lastSeq + 1, event.getTable(), event.getType(),
+                event.getId(), event.getRow(), System.currentTimeMillis());
+        log.put(record.getSeq(), record);
+        lastSeq = record.getSeq();
+        while (log.size() > capacity) {
+            final Map.Entry<Long, ChangeRecord> eldest = log.pollFirstEntry();
+            evictedSeq = eldest.getKey();
+        }
+        for (Consumer<ChangeRecord> subscriber : subscribers) {
+            subscriber.accept(record);
+        }
+        return record;
+    }
+
+    public long lastSequence() {
+        return lastSeq;
+    }
+
+    /**
+     * 读取 since 之后的变更
+     *
+     * since 大于当前最大 seq 说明进程重启过（seq 从 1 重新计数），同样要求消费方全量同步
+     *
+     * @param since 上次读到的 seq，首次传 0
+     * @param table 只看某张表，null 表示全部
+     * @param limit 最多返回条数
+     */
+    public ChangeBatch read(long since, String table, int limit) {
+        final long last = lastSeq;
+        if (since < evictedSeq || since > last) {
+            return new ChangeBatch(last, true, List.of());
+        }
+        final List<ChangeRecord> changes = new ArrayList<>();
+        long next = since;
+        for (ChangeRecord record : log.tailMap(since, false).values()) {
+            if (changes.size() >= limit) {
+                break;
+            }
+            next = record.getSeq();
+            if (table == null || table.equals(record.getTable())) {
+                changes.add(record);
+            }
+        }
+        return new ChangeBatch(next, false, changes);
+    }
+
+    /**
+     * @return 取消订阅
+     */
+    public Runnable subscribe(Consumer<ChangeRecord> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+}
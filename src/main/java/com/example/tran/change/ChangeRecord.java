@@ -0,0 +1,20 @@
+package com.example.tran.change;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 变更日志中的一条记录，seq 全局递增
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ChangeRecord {
+    private final long seq;
+    private final String table;
+    private final TableChangeEvent.Type type;
+    private final Object id;
+    private final Object row;
+    private final long timestamp;
+}
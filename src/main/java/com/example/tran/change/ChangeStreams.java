@@ -0,0 +1,192 @@
+package com.example.tran.change;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把 {@link ChangeFeed} 推送给 SSE 客户端
+ * <p>
+ * 追加回调只负责唤醒，真正的网络写出在独立线程池里做，慢客户端不会拖住写事务。
+ * 发送线程有上限、排队有上限，排不上队的会话直接断开；单次写出超过 send-timeout 的会话由巡检断开，
+ * 不让一个慢客户端长期占住共享的发送线程
+ */
+@Slf4j
+@Component
+public class ChangeStreams {
+
+    private static final int BATCH = 500;
+    private static final AtomicInteger SENDER_ID = new AtomicInteger();
+
+    private final ChangeFeed changeFeed;
+    private final long sendTimeoutNanos;
+    private final ThreadPoolExecutor sender;
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    public ChangeStreams(ChangeFeed changeFeed,
+                         @Value("${tran.change-stream.senders:8}") int senders,
+                         @Value("${tran.change-stream.max-queue:256}") int maxQueue,
+                         @Value("${tran.change-stream.send-timeout:10s}") Duration sendTimeout) {
+        this.changeFeed = changeFeed;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        // core = max，有界队列：任务到来时先把线程加到上限，空闲后回收，不会停在核心线程数
+        this.sender = new ThreadPoolExecutor(senders, senders,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueue),
+                r -> {
+                    final Thread thread = new Thread(r, "change-stream-" + SENDER_ID.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.sender.allowCoreThreadTimeOut(true);
+        final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "change-stream-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(sendTimeout.toMillis() / 4, 100);
+        watchdog.scheduleWithFixedDelay(this::expireSlowSends, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param since 从该 seq 之后开始推送
+     * @param table 只推送某张表，null 表示全部
+     */
+    public SseEmitter open(long since, String table, long timeoutMillis) {
+        final SseEmitter emitter = new SseEmitter(timeoutMillis);
+        final Session session = new Session(emitter, since, table);
+        session.unsubscribe = changeFeed.subscribe(record -> session.signal());
+        sessions.add(session);
+        emitter.onCompletion(session::close);
+        emitter.onTimeout(session::close);
+        emitter.onError(e -> session.close());
+        // 订阅之后再补发积压，避免订阅前后之间的记录丢失
+        session.signal();
+        return emitter;
+    }
+
+    private void expireSlowSends() {
+        final long now = System.nanoTime();
+        for (Session session : sessions) {
+            final long started = session.sendStarted;
+            if (started != 0 && now - started > sendTimeoutNanos) {
+                session.fail(new TimeoutException("变更推送写出超时"));
+            }
+        }
+    }
+
+    private class Session {
+        private final SseEmitter emitter;
+        private final String table;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private long lastSent;
+        private volatile Runnable unsubscribe;
+        /**
+         * 正在写出时为开始时间（nanoTime），空闲时为 0
+         */
+        private volatile long sendStarted;
+        private volatile Thread sendingThread;
+        /**
+         * 巡检只在写出仍在进行时中断发送线程，写出结束时在同一把锁内清掉中断标记，不会误伤线程池里的下一个任务
+         */
+        private final Object sendLock = new Object();
+
+        Session(SseEmitter emitter, long since, String table) {
+            this.emitter = emitter;
+            this.lastSent = since;
+            this.table = table;
+        }
+
+        void signal() {
+            if (closed.get() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 发送线程和队列都满了，说明推送整体跟不上，断开排不上队的会话，客户端可按最后的 id 重连
+                fail(e);
+            }
+        }
+
+        synchronized void drain() {
+            scheduled.set(false);
+            try {
+                ChangeBatch batch;
+                do {
+                    if (closed.get()) {
+                        return;
+                    }
+                    batch = changeFeed.read(lastSent, table, BATCH);
+                    if (batch.isReset()) {
+                        send(SseEmitter.event().name("reset").id(Long.toString(batch.getNext())).data(batch.getNext()));
+                    }
+                    for (ChangeRecord record : batch.getChanges()) {
+                        send(SseEmitter.event().name("change").id(Long.toString(record.getSeq())).data(record));
+                    }
+                    lastSent = batch.getNext();
+                } while (!batch.isEmpty() && !batch.isReset());
+            } catch (IOException | IllegalStateException e) {
+                fail(e);
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            sendingThread = Thread.currentThread();
+            sendStarted = System.nanoTime();
+            try {
+                emitter.send(event);
+            } finally {
+                synchronized (sendLock) {
+                    sendStarted = 0;
+                    sendingThread = null;
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        void fail(Exception e) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            log.debug("变更推送中断: {}", e.getMessage());
+            release();
+            if (e instanceof TimeoutException) {
+                synchronized (sendLock) {
+                    final Thread thread = sendingThread;
+                    if (sendStarted != 0 && thread != null) {
+                        thread.interrupt();
+                    }
+                }
+            }
+            emitter.completeWithError(e);
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                release();
+            }
+        }
+
+        private void release() {
+            sessions.remove(this);
+            unsubscribe.run();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.tran.change;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 一次写语句对某张表的修改，由 {@link TableChangeInterceptor} 在语句执行成功后发布
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class TableChangeEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    /**
+     * 表名
+     */
+    private final String table;
+
+    private final Type type;
+
+    /**
+     * 主键，按条件批量修改时为 null
+     */
+    private final Object id;
+
+    /**
+     * 写入时的实体副本，删除或按条件修改时为 null
+     */
+    private final Object row;
+}
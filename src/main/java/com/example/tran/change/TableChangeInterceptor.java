@@ -0,0 +1,91 @@
+package com.example.tran.change;
+
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 拦截所有 insert / update / delete，按 mapper 的 namespace 找到对应的表，发布 {@link TableChangeEvent}
+ * <p>
+ * 事件在写语句所在的线程同步发布，监听方用 {@code @TransactionalEventListener} 决定是否等事务提交
+ */
+@Component
+@RequiredArgsConstructor
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class TableChangeInterceptor implements Interceptor {
+
+    private final ApplicationEventPublisher publisher;
+
+    /**
+     * namespace -> 表信息，没有对应表的 namespace 也缓存为空
+     */
+    private final Map<String, Optional<TableInfo>> tables = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        final Object result = invocation.proceed();
+        final MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        final Object parameter = invocation.getArgs()[1];
+        tableOf(ms).ifPresent(table -> publisher.publishEvent(toEvent(table, ms.getSqlCommandType(), parameter)));
+        return result;
+    }
+
+    /**
+     * 能识别出实体时带上主键和实体副本；mybatis-plus 的 updateById 参数是 {"et": entity}，
+     * deleteById 参数直接是主键
+     */
+    private static TableChangeEvent toEvent(TableInfo table, SqlCommandType command, Object parameter) {
+        final TableChangeEvent.Type type = switch (command) {
+            case INSERT -> TableChangeEvent.Type.INSERT;
+            case DELETE -> TableChangeEvent.Type.DELETE;
+            default -> TableChangeEvent.Type.UPDATE;
+        };
+        Object entity = null;
+        if (table.getEntityType().isInstance(parameter)) {
+            entity = parameter;
+        } else if (parameter instanceof Map<?, ?> map && map.containsKey(Constants.ENTITY)) {
+            entity = map.get(Constants.ENTITY);
+        }
+        if (entity != null) {
+            final Object id = table.getKeyProperty() == null ? null : table.getPropertyValue(entity, table.getKeyProperty());
+            return new TableChangeEvent(table.getTableName(), type, id, type == TableChangeEvent.Type.DELETE ? null : copyOf(entity));
+        }
+        if (parameter instanceof Serializable && BeanUtils.isSimpleValueType(parameter.getClass())) {
+            return new TableChangeEvent(table.getTableName(), type, parameter, null);
+        }
+        return new TableChangeEvent(table.getTableName(), type, null, null);
+    }
+
+    /**
+     * 事务提交前调用方可能继续修改实体，这里留一份副本
+     */
+    private static Object copyOf(Object entity) {
+        final Object copy = BeanUtils.instantiateClass(entity.getClass());
+        BeanUtils.copyProperties(entity, copy);
+        return copy;
+    }
+
+    private Optional<TableInfo> tableOf(MappedStatement ms) {
+        final String id = ms.getId();
+        final String namespace = id.substring(0, id.lastIndexOf('.'));
+        return tables.computeIfAbsent(namespace, ns -> TableInfoHelper.getTableInfos().stream()
+                .filter(info -> ns.equals(info.getCurrentNamespace()))
+                .findFirst());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.tran.change;
+
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每张表一个版本号，写操作所在事务提交后递增；回滚不递增。不在事务中的写操作立即递增
+ */
+@Component
+public class TableVersions {
+
+    /**
+     * 进程启动标识，拼进 ETag，避免重启后版本号从 0 开始与客户端缓存的旧 ETag 撞上
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChange(TableChangeEvent event) {
+        counter(event.getTable()).incrementAndGet();
+    }
+
+    public long version(String table) {
+        return counter(table).get();
+    }
+
+    public long version(Class<?> entityClass) {
+        return version(tableName(entityClass));
+    }
+
+    /**
+     * 弱 ETag，同一版本的 JSON 和二进制表示语义相同
+     */
+    public String etag(Class<?> entityClass) {
+        final String table = tableName(entityClass);
+        return "W/\"" + table + "-" + epoch + "-" + version(table) + "\"";
+    }
+
+    /**
+     * 表版本之外还叠加了其他状态（如写缓冲中尚未落库的更新）时使用
+     *
+     * @param suffix 附加状态的版本
+     */
+    public String etag(Class<?> entityClass, String suffix) {
+        final String table = tableName(entityClass);
+        return "W/\"" + table + "-" + epoch + "-" + version(table) + "-" + suffix + "\"";
+    }
+
+    private AtomicLong counter(String table) {
+        return versions.computeIfAbsent(table, t -> new AtomicLong());
+    }
+
+    private static String tableName(Class<?> entityClass) {
+        final TableInfo info = TableInfoHelper.getTableInfo(entityClass);
+        if (info == null) {
+            throw new IllegalArgumentException("不是 mybatis-plus 实体: " + entityClass.getName());
+        }
+        return info.getTableName();
+    }
+}
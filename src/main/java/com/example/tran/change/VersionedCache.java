@@ -0,0 +1,32 @@
+package com.example.tran.change;
+
+import java.util.function.Supplier;
+
+/**
+ * 按版本号缓存的单个值，版本变化后下一次读取重新加载
+ * <p>
+ * 版本号要在加载之前读取：加载期间如果有新提交，缓存的是不旧于该版本的数据，下次读取会因版本变化重新加载
+ */
+public class VersionedCache<T> {
+
+    private volatile Entry<T> entry;
+
+    public T get(long version, Supplier<T> loader) {
+        final Entry<T> current = entry;
+        if (current != null && current.version == version) {
+            return current.value;
+        }
+        final T value = loader.get();
+        if (current == null || current.version < version) {
+            entry = new Entry<>(version, value);
+        }
+        return value;
+    }
+
+    public void invalidate() {
+        entry = null;
+    }
+
+    private record Entry<T>(long version, T value) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.tran.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link BinaryOutput} 的读取端，直接基于 {@link ByteBuffer}，可以是堆内、堆外或 mmap 的缓冲
+ *
+ * @author zyf
+ * @date 2024/06/13
+ */
+public final class BinaryInput {
+
+    private final ByteBuffer buf;
+
+    public BinaryInput(ByteBuffer buf) {
+        this.buf = buf;
+    }
+
+    public static BinaryInput of(byte[] bytes) {
+        return new BinaryInput(ByteBuffer.wrap(bytes));
+    }
+
+    public boolean hasRemaining() {
+        return buf.hasRemaining();
+    }
+
+    public int remaining() {
+        return buf.remaining();
+    }
+
+    public int position() {
+        return buf.position();
+    }
+
+    public int readByte() {
+        return buf.get() & 0xFF;
+    }
+
+    public long readVarLong() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buf.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("varint 格式错误");
+    }
+
+    public int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    public long readSignedVarLong() {
+        final long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public int readSignedVarInt() {
+        final int raw = readVarInt();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public String readString() {
+        final int len = readVarInt();
+        if (len < 0 || len > buf.remaining()) {
+            throw new IllegalArgumentException("字符串长度越界: " + len);
+        }
+        if (buf.hasArray()) {
+            final String value = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+            return value;
+        }
+        final byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.tran.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 可扩容的字节缓冲，整数用 zigzag + varint 编码，字符串按 UTF-8 长度前缀编码
+ * <p>
+ * 非线程安全，可通过 {@link #reset()} 复用
+ *
+ * @author zyf
+ * @date 2024/06/13
+ */
+public final class BinaryOutput {
+
+    private byte[] buf;
+    private int pos;
+
+    public BinaryOutput() {
+        this(256);
+    }
+
+    public BinaryOutput(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    public void writeByte(int b) {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    public void writeBytes(byte[] bytes, int off, int len) {
+        ensure(len);
+        System.arraycopy(bytes, off, buf, pos, len);
+        pos += len;
+    }
+
+    /**
+     * 无符号 varint
+     */
+    public void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    public void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 有符号整数，zigzag 后再 varint，小的负数也只占一两个字节
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeSignedVarInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeString(String value) {
+        // 先按 ASCII 快速路径写，遇到非 ASCII 再整体走 getBytes
+        final int len = value.length();
+        ensure(5 + len);
+        final int lenPos = pos;
+        int p = lenPos + varIntSize(len);
+        for (int i = 0; i < len; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                writeBytes(bytes, 0, bytes.length);
+                return;
+            }
+            buf[p++] = (byte) c;
+        }
+        writeVarInt(len);
+        pos = p;
+    }
+
+    public int size() {
+        return pos;
+    }
+
+    public void reset() {
+        pos = 0;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, pos);
+    }
+
+    /**
+     * 容量超过 limit 时收缩回 capacity，避免池化的缓冲被一次大响应长期撑大
+     */
+    void trim(int limit, int capacity) {
+        if (buf.length > limit) {
+            buf = new byte[capacity];
+        }
+        pos = 0;
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private void ensure(int extra) {
+        if (pos + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + extra));
+        }
+    }
+}
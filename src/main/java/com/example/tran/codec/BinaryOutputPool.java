@@ -0,0 +1,33 @@
+package com.example.tran.codec;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link BinaryOutput} 对象池，池满或池空都不阻塞：取不到就新建，放不回就丢弃
+ *
+ * @author zyf
+ * @date 2024/06/14
+ */
+public final class BinaryOutputPool {
+
+    private final BlockingQueue<BinaryOutput> pool;
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+
+    public BinaryOutputPool(int size, int initialCapacity, int maxRetainedCapacity) {
+        this.pool = new ArrayBlockingQueue<>(size);
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    public BinaryOutput acquire() {
+        final BinaryOutput out = pool.poll();
+        return out != null ? out : new BinaryOutput(initialCapacity);
+    }
+
+    public void release(BinaryOutput out) {
+        out.trim(maxRetainedCapacity, initialCapacity);
+        pool.offer(out);
+    }
+}
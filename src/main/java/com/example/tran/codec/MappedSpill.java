@@ -0,0 +1,190 @@
+package com.example.tran.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 落盘的大结果集：查询结果按 {@link RowCodec} 编码顺序写入临时文件，再以 mmap 只读映射，
+ * 遍历时逐行解码，堆上只保留当前行
+ * <p>
+ * 单个映射段不超过 {@link #MAX_SEGMENT} 字节，写入时保证一行不会跨段。
+ * 使用完必须 {@link #close()}，关闭时删除文件。
+ *
+ * <pre>
+ * try (MappedSpill&lt;User&gt; users = userService.findAllSpilled()) {
+ *     for (User user : users) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/13
+ */
+@Slf4j
+public final class MappedSpill<T> implements Iterable<T>, AutoCloseable {
+
+    static final long MAX_SEGMENT = Integer.MAX_VALUE;
+
+    private final RowCodec<T> codec;
+    private final Path file;
+    private final long rowCount;
+    private final List<MappedByteBuffer> segments;
+
+    private MappedSpill(RowCodec<T> codec, Path file, long rowCount, List<MappedByteBuffer> segments) {
+        this.codec = codec;
+        this.file = file;
+        this.rowCount = rowCount;
+        this.segments = segments;
+    }
+
+    /**
+     * 执行查询并把结果写入落盘文件
+     *
+     * @param codec     行编解码器
+     * @param directory 临时文件目录
+     * @param query     查询，逐行回调传入的 Consumer，一般对应 MyBatis 的 ResultHandler
+     */
+    public static <T> MappedSpill<T> spill(RowCodec<T> codec, Path directory, Consumer<Consumer<T>> query) {
+        try (Writer<T> writer = new Writer<>(codec, directory)) {
+            query.accept(writer::write);
+            return writer.finish();
+        }
+    }
+
+    public long size() {
+        return rowCount;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int segment = 0;
+            private BinaryInput in = segments.isEmpty() ? null : input(0);
+
+            @Override
+            public boolean hasNext() {
+                while (in != null && !in.hasRemaining()) {
+                    in = ++segment < segments.size() ? input(segment) : null;
+                }
+                return in != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return codec.read(in);
+            }
+        };
+    }
+
+    private BinaryInput input(int segment) {
+        // duplicate 出独立的 position，多个迭代器可以并发读同一映射
+        return new BinaryInput(segments.get(segment).duplicate());
+    }
+
+    @Override
+    public void close() {
+        segments.clear();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除落盘文件失败: {}", file, e);
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * 顺序写入，非线程安全
+     */
+    static final class Writer<T> implements AutoCloseable {
+        private final RowCodec<T> codec;
+        private final Path file;
+        private final OutputStream out;
+        private final BinaryOutput row = new BinaryOutput();
+        private final List<Long> segmentStarts = new ArrayList<>();
+        private long position;
+        private long rowCount;
+        private boolean finished;
+
+        Writer(RowCodec<T> codec, Path directory) {
+            this.codec = codec;
+            try {
+                Files.createDirectories(directory);
+                this.file = Files.createTempFile(directory, codec.name() + "-", ".spill");
+                this.out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.WRITE), 1 << 16);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segmentStarts.add(0L);
+        }
+
+        void write(T value) {
+            row.reset();
+            codec.write(value, row);
+            if (position + row.size() - segmentStarts.get(segmentStarts.size() - 1) > MAX_SEGMENT) {
+                segmentStarts.add(position);
+            }
+            try {
+                row.writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            position += row.size();
+            rowCount++;
+        }
+
+        MappedSpill<T> finish() {
+            try {
+                out.close();
+                final List<MappedByteBuffer> segments = new ArrayList<>();
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    for (int i = 0; i < segmentStarts.size(); i++) {
+                        final long start = segmentStarts.get(i);
+                        final long end = i + 1 < segmentStarts.size() ? segmentStarts.get(i + 1) : position;
+                        if (end > start) {
+                            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                        }
+                    }
+                }
+                finished = true;
+                return new MappedSpill<>(codec, file, rowCount, segments);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (finished) {
+                return;
+            }
+            try {
+                out.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("删除落盘文件失败: {}", file, e);
+            }
+        }
+    }
+}
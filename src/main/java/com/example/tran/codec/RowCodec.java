@@ -0,0 +1,181 @@
+package com.example.tran.codec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 实体的紧凑二进制编解码，字段读写器在构建时确定，不走反射
+ * <p>
+ * 行格式：presence 位图（varint，第 i 位表示第 i 个字段非 null），随后按声明顺序写出非 null 字段。
+ *
+ * <pre>
+ * RowCodec&lt;User&gt; codec = RowCodec.builder("user", User::new)
+ *         .int64("id", User::getId, User::setId)
+ *         .string("name", User::getName, User::setName)
+ *         .build();
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/13
+ */
+public final class RowCodec<T> {
+
+    public enum FieldType {
+        INT64, INT32, STRING
+    }
+
+    private final String name;
+    private final Supplier<T> factory;
+    private final Field<T, ?>[] fields;
+
+    private RowCodec(String name, Supplier<T> factory, Field<T, ?>[] fields) {
+        this.name = name;
+        this.factory = factory;
+        this.fields = fields;
+    }
+
+    public static <T> Builder<T> builder(String name, Supplier<T> factory) {
+        return new Builder<>(name, factory);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public List<Field<T, ?>> fields() {
+        return Collections.unmodifiableList(List.of(fields));
+    }
+
+    public void write(T row, BinaryOutput out) {
+        long presence = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getter.apply(row) != null) {
+                presence |= 1L << i;
+            }
+        }
+        out.writeVarLong(presence);
+        for (int i = 0; i < fields.length; i++) {
+            if ((presence & (1L << i)) != 0) {
+                fields[i].write(row, out);
+            }
+        }
+    }
+
+    public T read(BinaryInput in) {
+        final T row = factory.get();
+        final long presence = in.readVarLong();
+        for (int i = 0; i < fields.length; i++) {
+            if ((presence & (1L << i)) != 0) {
+                fields[i].read(row, in);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @return 只包含声明字段的浅拷贝
+     */
+    public T copy(T row) {
+        final T copy = factory.get();
+        merge(row, copy);
+        return copy;
+    }
+
+    /**
+     * 把 source 的非 null 字段覆盖到 target 上，语义与 mybatis-plus 按 id 更新时忽略 null 字段一致
+     */
+    public void merge(T source, T target) {
+        for (Field<T, ?> field : fields) {
+            field.copy(source, target);
+        }
+    }
+
+    public static final class Field<T, V> {
+        private final String name;
+        private final FieldType type;
+        private final Function<T, V> getter;
+        private final BiConsumer<T, V> setter;
+
+        private Field(String name, FieldType type, Function<T, V> getter, BiConsumer<T, V> setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public FieldType type() {
+            return type;
+        }
+
+        private void write(T row, BinaryOutput out) {
+            final V value = getter.apply(row);
+            switch (type) {
+                case INT64 -> out.writeSignedVarLong((Long) value);
+                case INT32 -> out.writeSignedVarInt((Integer) value);
+                case STRING -> out.writeString((String) value);
+                default -> throw new IllegalStateException("未知字段类型: " + type);
+            }
+        }
+
+        private void copy(T source, T target) {
+            final V value = getter.apply(source);
+            if (value != null) {
+                setter.accept(target, value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void read(T row, BinaryInput in) {
+            final Object value = switch (type) {
+                case INT64 -> in.readSignedVarLong();
+                case INT32 -> in.readSignedVarInt();
+                case STRING -> in.readString();
+            };
+            setter.accept(row, (V) value);
+        }
+    }
+
+    public static final class Builder<T> {
+        private final String name;
+        private final Supplier<T> factory;
+        private final List<Field<T, ?>> fields = new ArrayList<>();
+
+        private Builder(String name, Supplier<T> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        public Builder<T> int64(String field, Function<T, Long> getter, BiConsumer<T, Long> setter) {
+            return add(new Field<>(field, FieldType.INT64, getter, setter));
+        }
+
+        public Builder<T> int32(String field, Function<T, Integer> getter, BiConsumer<T, Integer> setter) {
+            return add(new Field<>(field, FieldType.INT32, getter, setter));
+        }
+
+        public Builder<T> string(String field, Function<T, String> getter, BiConsumer<T, String> setter) {
+            return add(new Field<>(field, FieldType.STRING, getter, setter));
+        }
+
+        private Builder<T> add(Field<T, ?> field) {
+            if (fields.size() == Long.SIZE) {
+                throw new IllegalStateException("字段数不能超过 " + Long.SIZE);
+            }
+            fields.add(field);
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public RowCodec<T> build() {
+            return new RowCodec<>(name, factory, fields.toArray(new Field[0]));
+        }
+    }
+}
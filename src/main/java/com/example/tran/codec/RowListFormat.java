@@ -0,0 +1,85 @@
+package com.example.tran.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 行列表的二进制格式，带 schema 头，读取端可以校验字段是否一致
+ *
+ * <pre>
+ * magic 'U' 'R' | version | codec name | field count | (field name, field type)* | row count | rows
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/14
+ */
+public final class RowListFormat {
+
+    static final int MAGIC_0 = 'U';
+    static final int MAGIC_1 = 'R';
+    static final int VERSION = 1;
+
+    /**
+     * 缓冲超过该大小就先刷到输出流，大列表不会把缓冲撑到整个响应大小
+     */
+    private static final int FLUSH_THRESHOLD = 1 << 16;
+
+    private RowListFormat() {
+    }
+
+    public static <T> void write(RowCodec<T> codec, Collection<? extends T> rows, BinaryOutput buf, OutputStream out) throws IOException {
+        buf.writeByte(MAGIC_0);
+        buf.writeByte(MAGIC_1);
+        buf.writeByte(VERSION);
+        buf.writeString(codec.name());
+        buf.writeVarInt(codec.fields().size());
+        for (RowCodec.Field<T, ?> field : codec.fields()) {
+            buf.writeString(field.name());
+            buf.writeByte(field.type().ordinal());
+        }
+        buf.writeVarInt(rows.size());
+        for (T row : rows) {
+            codec.write(row, buf);
+            if (buf.size() >= FLUSH_THRESHOLD) {
+                buf.writeTo(out);
+                buf.reset();
+            }
+        }
+        buf.writeTo(out);
+        buf.reset();
+    }
+
+    public static <T> List<T> read(RowCodec<T> codec, BinaryInput in) {
+        if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+            throw new IllegalArgumentException("不是行列表格式");
+        }
+        final int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的版本: " + version);
+        }
+        final String name = in.readString();
+        final int fieldCount = in.readVarInt();
+        final List<RowCodec.Field<T, ?>> fields = codec.fields();
+        if (!codec.name().equals(name) || fieldCount != fields.size()) {
+            throw new IllegalArgumentException("schema 不匹配: " + name);
+        }
+        for (RowCodec.Field<T, ?> field : fields) {
+            if (!field.name().equals(in.readString()) || field.type().ordinal() != in.readByte()) {
+                throw new IllegalArgumentException("schema 字段不匹配: " + field.name());
+            }
+        }
+        final int count = in.readVarInt();
+        // 行数来自输入，可能是请求体：每行至少 1 字节（presence 位图），超出剩余字节数的一定是坏数据
+        if (count < 0 || count > in.remaining()) {
+            throw new IllegalArgumentException("行数越界: " + count);
+        }
+        final List<T> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(codec.read(in));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.tran.codec;
+
+import com.example.tran.entity.User;
+import com.example.tran.entity.User2;
+
+/**
+ * user / user2 的行编解码器
+ *
+ * @author zyf
+ * @date 2024/06/13
+ */
+public final class UserCodecs {
+
+    public static final RowCodec<User> USER = RowCodec.builder("user", User::new)
+            .int64("id", User::getId, User::setId)
+            .string("name", User::getName, User::setName)
+            .int32("age", User::getAge, User::setAge)
+            .string("email", User::getEmail, User::setEmail)
+            .build();
+
+    public static final RowCodec<User2> USER2 = RowCodec.builder("user2", User2::new)
+            .int64("id", User2::getId, User2::setId)
+            .string("name", User2::getName, User2::setName)
+            .int32("age", User2::getAge, User2::setAge)
+            .string("email", User2::getEmail, User2::setEmail)
+            .build();
+
+    /**
+     * @return 对应实体的编解码器，不支持时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RowCodec<T> forType(Class<T> type) {
+        if (type == User.class) {
+            return (RowCodec<T>) USER;
+        }
+        if (type == User2.class) {
+            return (RowCodec<T>) USER2;
+        }
+        return null;
+    }
+
+    private UserCodecs() {
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.tran.columnar;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * 用户表的列式只读快照，用于统计类查询
+ * <p>
+ * id / age 存原始数组，name / email 做字典编码；过滤结果用位图表示，
+ * 扫描和聚合按 {@link #CHUNK_SIZE} 行切块并行执行，每块写各自的位图字，不需要加锁。
+ *
+ * <pre>
+ * ColumnarTable table = ColumnarTable.builder(User::getId, User::getName, User::getAge, User::getEmail)
+ *         .addAll(users)
+ *         .build();
+ * SortedMap&lt;Integer, Long&gt; histogram = table.ageHistogram(table.whereAge(age -&gt; age &gt;= 18), 10);
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/12
+ */
+public final class ColumnarTable {
+
+    /**
+     * 并行扫描的切块大小，必须是 64 的倍数，保证每块独占位图中的若干个 long
+     */
+    public static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * age 为 null 时的占位值
+     */
+    public static final int NULL_AGE = Integer.MIN_VALUE;
+
+    private final int size;
+    private final long[] id;
+    private final int[] age;
+    private final DictColumn name;
+    private final DictColumn email;
+    private final int minAge;
+    private final int maxAge;
+    private final long createdAt;
+
+    private ColumnarTable(int size, long[] id, int[] age, DictColumn name, DictColumn email, int minAge, int maxAge) {
+        this.size = size;
+        this.id = id;
+        this.age = age;
+        this.name = name;
+        this.email = email;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    public static <T> Builder<T> builder(ToLongFunction<T> idGetter, Function<T, String> nameGetter,
+                                         Function<T, Integer> ageGetter, Function<T, String> emailGetter) {
+        return new Builder<>(idGetter, nameGetter, ageGetter, emailGetter);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public long id(int row) {
+        return id[row];
+    }
+
+    /**
+     * @return 年龄，为 null 时返回 {@link #NULL_AGE}
+     */
+    public int age(int row) {
+        return age[row];
+    }
+
+    public DictColumn name() {
+        return name;
+    }
+
+    public DictColumn email() {
+        return email;
+    }
+
+    // ------------------------------------------------------------------------------------------- scan / filter
+
+    /**
+     * 全部行
+     */
+    public Selection all() {
+        final long[] words = new long[wordCount()];
+        Arrays.fill(words, -1L);
+        final int tail = size & 63;
+        if (tail != 0) {
+            words[words.length - 1] = (1L << tail) - 1;
+        }
+        return new Selection(size, words);
+    }
+
+    /**
+     * 按年龄过滤，null 年龄不参与匹配
+     */
+    public Selection whereAge(IntPredicate predicate) {
+        return scan(row -> age[row] != NULL_AGE && predicate.test(age[row]));
+    }
+
+    public Selection whereName(Predicate<String> predicate) {
+        return whereDict(name, predicate);
+    }
+
+    public Selection whereEmail(Predicate<String> predicate) {
+        return whereDict(email, predicate);
+    }
+
+    private Selection whereDict(DictColumn column, Predicate<String> predicate) {
+        // 谓词只对字典求值，行扫描只做数组查表
+        final boolean[] matched = column.matchCodes(value -> value != null && predicate.test(value));
+        return scan(row -> {
+            final int code = column.code(row);
+            return code != DictColumn.NULL_CODE && matched[code];
+        });
+    }
+
+    private Selection scan(IntPredicate rowPredicate) {
+        final long[] words = new long[wordCount()];
+        chunks().forEach(chunk -> {
+            final int end = Math.min(size, (chunk + 1) * CHUNK_SIZE);
+            for (int row = chunk * CHUNK_SIZE; row < end; row++) {
+                if (rowPredicate.test(row)) {
+                    words[row >>> 6] |= 1L << row;
+                }
+            }
+        });
+        return new Selection(size, words);
+    }
+
+    // ------------------------------------------------------------------------------------------- aggregate
+
+    /**
+     * 年龄分布
+     *
+     * @param selection 参与统计的行
+     * @param width     分桶宽度
+     * @return 桶下界 -> 行数，只包含非空桶
+     */
+    public SortedMap<Integer, Long> ageHistogram(Selection selection, int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("width 必须大于 0");
+        }
+        final SortedMap<Integer, Long> result = new TreeMap<>();
+        if (minAge > maxAge) {
+            return result;
+        }
+        final int base = Math.floorDiv(minAge, width);
+        final int buckets = Math.floorDiv(maxAge, width) - base + 1;
+        final long[] counts = aggregate(selection, () -> new long[buckets], (acc, row) -> {
+            if (age[row] != NULL_AGE) {
+                acc[Math.floorDiv(age[row], width) - base]++;
+            }
+        }, ColumnarTable::sum);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                result.put((i + base) * width, counts[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按邮箱域名计数，按数量倒序
+     */
+    public Map<String, Long> countByEmailDomain(Selection selection) {
+        final Map<String, Integer> domains = new HashMap<>();
+        final int[] domainOfCode = email.deriveCodes(ColumnarTable::domainOf, domains);
+        final long[] counts = aggregate(selection, () -> new long[domains.size()], (acc, row) -> {
+            final int code = email.code(row);
+            if (code != DictColumn.NULL_CODE && domainOfCode[code] != DictColumn.NULL_CODE) {
+                acc[domainOfCode[code]]++;
+            }
+        }, ColumnarTable::sum);
+
+        final String[] names = new String[domains.size()];
+        domains.forEach((domain, code) -> names[code] = domain);
+        final Map<String, Long> result = new LinkedHashMap<>();
+        IntStream.range(0, names.length)
+                .filter(i -> counts[i] > 0)
+                .boxed()
+                .sorted((a, b) -> Long.compare(counts[b], counts[a]))
+                .forEach(i -> result.put(names[i], counts[i]));
+        return result;
+    }
+
+    /**
+     * 年龄的 count / min / max / avg，null 年龄不计入
+     */
+    public IntSummaryStatistics ageStatistics(Selection selection) {
+        return aggregate(selection, IntSummaryStatistics::new, (acc, row) -> {
+            if (age[row] != NULL_AGE) {
+                acc.accept(age[row]);
+            }
+        }, (a, b) -> {
+            a.combine(b);
+            return a;
+        });
+    }
+
+    /**
+     * 通用的分块并行聚合，每块一个局部累加器，最后合并
+     */
+    public <A> A aggregate(Selection selection, Supplier<A> partial, RowAccumulator<A> accumulator, BinaryOperator<A> merge) {
+        if (selection.size != size) {
+            throw new IllegalArgumentException("selection 不属于当前快照");
+        }
+        return chunks()
+                .mapToObj(chunk -> {
+                    final A acc = partial.get();
+                    selection.forEachInChunk(chunk, row -> accumulator.accept(acc, row));
+                    return acc;
+                })
+                .reduce(merge)
+                .orElseGet(partial);
+    }
+
+    private IntStream chunks() {
+        final int chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        final IntStream chunks = IntStream.range(0, chunkCount);
+        return chunkCount > 1 ? chunks.parallel() : chunks;
+    }
+
+    private int wordCount() {
+        return (size + 63) >>> 6;
+    }
+
+    private static long[] sum(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    static String domainOf(String email) {
+        final int at = email.lastIndexOf('@');
+        return at < 0 || at == email.length() - 1 ? null : email.substring(at + 1).toLowerCase();
+    }
+
+    @FunctionalInterface
+    public interface RowAccumulator<A> {
+        void accept(A acc, int row);
+    }
+
+    /**
+     * 过滤结果，位图表示，不可变
+     */
+    public static final class Selection {
+        private final int size;
+        private final long[] words;
+
+        private Selection(int size, long[] words) {
+            this.size = size;
+            this.words = words;
+        }
+
+        public Selection and(Selection other) {
+            final long[] result = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                result[i] = words[i] & other.words[i];
+            }
+            return new Selection(size, result);
+        }
+
+        public Selection or(Selection other) {
+            final long[] result = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                result[i] = words[i] | other.words[i];
+            }
+            return new Selection(size, result);
+        }
+
+        public int count() {
+            int count = 0;
+            for (long word : words) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        public boolean contains(int row) {
+            return (words[row >>> 6] & (1L << row)) != 0;
+        }
+
+        void forEachInChunk(int chunk, IntConsumer consumer) {
+            final int from = chunk * (CHUNK_SIZE >>> 6);
+            final int to = Math.min(words.length, from + (CHUNK_SIZE >>> 6));
+            for (int w = from; w < to; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    consumer.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 逐行追加构建快照，配合 ResultHandler 使用时不需要先把整张表读成 List
+     */
+    public static final class Builder<T> {
+        private final ToLongFunction<T> idGetter;
+        private final Function<T, String> nameGetter;
+        private final Function<T, Integer> ageGetter;
+        private final Function<T, String> emailGetter;
+
+        private int size;
+        private long[] id = new long[1024];
+        private int[] age = new int[1024];
+        private final DictColumn.Builder name = new DictColumn.Builder(1024);
+        private final DictColumn.Builder email = new DictColumn.Builder(1024);
+        private int minAge = Integer.MAX_VALUE;
+        private int maxAge = Integer.MIN_VALUE;
+
+        private Builder(ToLongFunction<T> idGetter, Function<T, String> nameGetter,
+                        Function<T, Integer> ageGetter, Function<T, String> emailGetter) {
+            this.idGetter = idGetter;
+            this.nameGetter = nameGetter;
+            this.ageGetter = ageGetter;
+            this.emailGetter = emailGetter;
+        }
+
+        public Builder<T> add(T row) {
+            if (size == id.length) {
+                id = Arrays.copyOf(id, size << 1);
+                age = Arrays.copyOf(age, size << 1);
+            }
+            id[size] = idGetter.applyAsLong(row);
+            final Integer rowAge = ageGetter.apply(row);
+            if (rowAge == null) {
+                age[size] = NULL_AGE;
+            } else {
+                age[size] = rowAge;
+                minAge = Math.min(minAge, rowAge);
+                maxAge = Math.max(maxAge, rowAge);
+            }
+            name.set(size, nameGetter.apply(row));
+            email.set(size, emailGetter.apply(row));
+            size++;
+            return this;
+        }
+
+        public Builder<T> addAll(Iterable<? extends T> rows) {
+            for (T row : rows) {
+                add(row);
+            }
+            return this;
+        }
+
+        public ColumnarTable build() {
+            return new ColumnarTable(size, Arrays.copyOf(id, size), Arrays.copyOf(age, size),
+                    name.build(size), email.build(size), minAge, maxAge);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.tran.columnar;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 字典编码的字符串列：每行只存一个 int 编码，相同取值只保存一份
+ *
+ * @author zyf
+ * @date 2024/06/12
+ */
+public final class DictColumn {
+
+    /**
+     * null 值的编码
+     */
+    public static final int NULL_CODE = -1;
+
+    private final int[] codes;
+    private final String[] dict;
+
+    DictColumn(int[] codes, String[] dict) {
+        this.codes = codes;
+        this.dict = dict;
+    }
+
+    public int code(int row) {
+        return codes[row];
+    }
+
+    public String value(int row) {
+        final int code = codes[row];
+        return code == NULL_CODE ? null : dict[code];
+    }
+
+    public String decode(int code) {
+        return code == NULL_CODE ? null : dict[code];
+    }
+
+    /**
+     * 不同取值个数
+     */
+    public int cardinality() {
+        return dict.length;
+    }
+
+    /**
+     * 对字典中每个取值只求值一次，结果按编码索引，扫描时只需查表
+     */
+    public boolean[] matchCodes(Predicate<String> predicate) {
+        final boolean[] matched = new boolean[dict.length];
+        for (int i = 0; i < dict.length; i++) {
+            matched[i] = predicate.test(dict[i]);
+        }
+        return matched;
+    }
+
+    /**
+     * 把字典映射成一个更小的派生字典（比如 email -> 域名），返回每个编码对应的派生编码
+     *
+     * @param mapper  派生函数
+     * @param derived 输出参数，派生字典的取值
+     * @return 原编码 -> 派生编码
+     */
+    public int[] deriveCodes(Function<String, String> mapper, Map<String, Integer> derived) {
+        final int[] mapping = new int[dict.length];
+        for (int i = 0; i < dict.length; i++) {
+            final String key = mapper.apply(dict[i]);
+            mapping[i] = key == null ? NULL_CODE : derived.computeIfAbsent(key, k -> derived.size());
+        }
+        return mapping;
+    }
+
+    /**
+     * 构建时使用，非线程安全
+     */
+    static final class Builder {
+        private int[] codes;
+        private final Map<String, Integer> index = new HashMap<>();
+        private String[] dict = new String[16];
+
+        Builder(int capacity) {
+            this.codes = new int[capacity];
+        }
+
+        void set(int row, String value) {
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(row + 1, codes.length << 1));
+            }
+            if (value == null) {
+                codes[row] = NULL_CODE;
+                return;
+            }
+            Integer code = index.get(value);
+            if (code == null) {
+                code = index.size();
+                if (code == dict.length) {
+                    dict = Arrays.copyOf(dict, dict.length << 1);
+                }
+                dict[code] = value;
+                index.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        DictColumn build(int size) {
+            return new DictColumn(Arrays.copyOf(codes, size), Arrays.copyOf(dict, index.size()));
+        }
+    }
+}
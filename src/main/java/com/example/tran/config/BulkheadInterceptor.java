@@ -0,0 +1,52 @@
+package com.example.tran.config;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * 接口级舱壁：超过配置的并发请求数直接返回 503，不进入业务代码，也不占用共享线程池
+ */
+@RequiredArgsConstructor
+public class BulkheadInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = BulkheadInterceptor.class.getName() + ".PERMIT";
+
+    private final Bulkheads bulkheads;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // 异步请求的再次分发，额度在首次分发时已经拿到
+            return true;
+        }
+        final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        final Semaphore permits = pattern == null ? null : bulkheads.endpoint(pattern.toString());
+        if (permits == null) {
+            return true;
+        }
+        if (!permits.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return false;
+        }
+        request.setAttribute(PERMIT, permits);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        final Object permits = request.getAttribute(PERMIT);
+        if (permits != null) {
+            request.removeAttribute(PERMIT);
+            ((Semaphore) permits).release();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.tran.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 舱壁额度配置
+ *
+ * <pre>
+ * tran:
+ *   bulkhead:
+ *     defaults: { max-concurrent: 10, max-queue: 50 }
+ *     groups:
+ *       test: { max-concurrent: 5, max-queue: 20 }
+ *     endpoints:
+ *       "[/user/check]": { max-concurrent: 20 }
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "tran.bulkhead")
+public class BulkheadProperties {
+
+    /**
+     * 未单独配置的 PkSync 分组使用的额度
+     */
+    private Limits defaults = new Limits();
+
+    /**
+     * PkSync 分组名 -> 额度
+     */
+    private Map<String, Limits> groups = new LinkedHashMap<>();
+
+    /**
+     * 接口路径（与 @GetMapping 中的写法一致）-> 额度，未配置的接口不限流
+     */
+    private Map<String, Limits> endpoints = new LinkedHashMap<>();
+
+    @Data
+    public static class Limits {
+        private int maxConcurrent = 10;
+        private int maxQueue = 50;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.tran.config;
+
+import com.example.tran.utils.Bulkhead;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 按名称管理舱壁：PkSync 分组各自一份并发额度，接口各自一份并发请求额度
+ */
+@Component
+@RequiredArgsConstructor
+public class Bulkheads {
+
+    private final BulkheadProperties properties;
+
+    private final Map<String, Bulkhead> groups = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * 分组对应的舱壁，首次使用时按配置创建，之后复用
+     *
+     * @param group    PkSync 分组名
+     * @param delegate 共享线程池
+     */
+    public Bulkhead executor(String group, Executor delegate) {
+        return groups.computeIfAbsent(group, name -> {
+            final BulkheadProperties.Limits limits = properties.getGroups().getOrDefault(name, properties.getDefaults());
+            return new Bulkhead(name, limits.getMaxConcurrent(), limits.getMaxQueue(), delegate);
+        });
+    }
+
+    /**
+     * @return 接口的并发请求额度，未配置时为 null
+     */
+    public Semaphore endpoint(String pattern) {
+        final BulkheadProperties.Limits limits = properties.getEndpoints().get(pattern);
+        if (limits == null) {
+            return null;
+        }
+        return endpoints.computeIfAbsent(pattern, p -> new Semaphore(limits.getMaxConcurrent()));
+    }
+
+    public Collection<Bulkhead> groups() {
+        return groups.values();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.tran.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 配置了只读副本或分片时替换默认数据源：主库 + 副本 + 分片组成 {@link ReadWriteRoutingDataSource}，
+ * 外面再包一层 LazyConnectionDataSourceProxy，MyBatis、事务管理器、SQL 初始化都使用这个代理
+ */
+@Configuration
+@Conditional(DataSourceConfig.RoutingCondition.class)
+public class DataSourceConfig {
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(DataSourceProperties properties,
+                                                        DataSourceRoutingProperties routingProperties,
+                                                        SqlInitializationProperties sqlInitProperties) {
+        final HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        final List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < routingProperties.getReplicas().size(); i++) {
+            final HikariDataSource replica = build(properties, routingProperties.getReplicas().get(i), "replica-" + i);
+            // 副本只读，误路由的写语句直接报错
+            replica.setReadOnly(true);
+            if (routingProperties.isInitializeReplicas()) {
+                initialize(replica, sqlInitProperties, null);
+            }
+            replicas.add(replica);
+        }
+
+        final List<DataSource> shards = new ArrayList<>();
+        final int shardCount = routingProperties.getShards().size();
+        for (int i = 0; i < shardCount; i++) {
+            final HikariDataSource shard = build(properties, routingProperties.getShards().get(i), "shard-" + i);
+            if (routingProperties.isInitializeShards()) {
+                final int index = i;
+                initialize(shard, sqlInitProperties, jdbc -> {
+                    for (String table : routingProperties.getShardTables()) {
+                        jdbc.update("delete from `" + table + "` where mod(id, ?) <> ?", shardCount, index);
+                    }
+                });
+            }
+            shards.add(shard);
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private static HikariDataSource build(DataSourceProperties properties, DataSourceRoutingProperties.Node node, String poolName) {
+        final HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(node.getUrl())
+                .username(StringUtils.hasText(node.getUsername()) ? node.getUsername() : properties.determineUsername())
+                .password(node.getPassword() != null ? node.getPassword() : properties.determinePassword())
+                .build();
+        dataSource.setPoolName(poolName);
+        dataSource.setMaximumPoolSize(node.getMaximumPoolSize());
+        return dataSource;
+    }
+
+    /**
+     * 初始化脚本要建表写数据，用一个临时的可写连接池执行
+     *
+     * @param afterScripts 脚本执行完后的额外处理，可以为 null
+     */
+    private static void initialize(HikariDataSource dataSource, SqlInitializationProperties sqlInitProperties,
+                                   Consumer<JdbcTemplate> afterScripts) {
+        try (HikariDataSource writable = new HikariDataSource()) {
+            writable.setJdbcUrl(dataSource.getJdbcUrl());
+            writable.setUsername(dataSource.getUsername());
+            writable.setPassword(dataSource.getPassword());
+            writable.setDriverClassName(dataSource.getDriverClassName());
+            writable.setMaximumPoolSize(1);
+            new SqlDataSourceScriptDatabaseInitializer(writable, sqlInitProperties).initializeDatabase();
+            if (afterScripts != null) {
+                afterScripts.accept(new JdbcTemplate(writable));
+            }
+        }
+    }
+
+    static class RoutingCondition extends AnyNestedCondition {
+
+        RoutingCondition() {
+            super(ConfigurationPhase.PARSE_CONFIGURATION);
+        }
+
+        @ConditionalOnProperty(prefix = "tran.datasource.replicas[0]", name = "url")
+        static class Replicas {
+        }
+
+        @ConditionalOnProperty(prefix = "tran.datasource.shards[0]", name = "url")
+        static class Shards {
+        }
+    }
+}
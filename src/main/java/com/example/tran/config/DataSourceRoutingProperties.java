@@ -0,0 +1,66 @@
+package com.example.tran.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读副本和分片配置，主库仍然使用 spring.datasource
+ *
+ * <pre>
+ * tran:
+ *   datasource:
+ *     initialize-replicas: true
+ *     replicas:
+ *       - url: jdbc:h2:mem:replica0;MODE=MYSQL;DB_CLOSE_DELAY=-1
+ *       - url: jdbc:h2:mem:replica1;MODE=MYSQL;DB_CLOSE_DELAY=-1
+ *     initialize-shards: true
+ *     shards:
+ *       - url: jdbc:h2:mem:shard0;MODE=MYSQL;DB_CLOSE_DELAY=-1
+ *       - url: jdbc:h2:mem:shard1;MODE=MYSQL;DB_CLOSE_DELAY=-1
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "tran.datasource")
+public class DataSourceRoutingProperties {
+
+    /**
+     * 只读副本，为空时不做读写分离
+     */
+    private List<Node> replicas = new ArrayList<>();
+
+    /**
+     * 启动时用 spring.sql.init 的脚本初始化副本，只用于本地的内存库
+     */
+    private boolean initializeReplicas;
+
+    /**
+     * 分片库，按 id 取模路由，为空时只有主库一个分片
+     */
+    private List<Node> shards = new ArrayList<>();
+
+    /**
+     * 启动时用 spring.sql.init 的脚本初始化分片，并删掉 {@link #shardTables} 中不属于该分片的行，只用于本地的内存库
+     */
+    private boolean initializeShards;
+
+    /**
+     * 按 id 分片的表
+     */
+    private List<String> shardTables = new ArrayList<>(List.of("user", "user2"));
+
+    @Data
+    public static class Node {
+        private String url;
+        /**
+         * 为空时与主库相同
+         */
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
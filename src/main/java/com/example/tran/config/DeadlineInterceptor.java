@@ -0,0 +1,59 @@
+package com.example.tran.config;
+
+import com.example.tran.utils.Deadline;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * 为每个请求创建截止时间：默认 tran.deadline.default-timeout，
+ * 调用方可以通过 {@link #HEADER} 请求头缩短，不能延长：舱壁额度和 JDBC 语句超时都按服务端的预算设定
+ */
+@RequiredArgsConstructor
+public class DeadlineInterceptor implements AsyncHandlerInterceptor {
+
+    /**
+     * 调用方剩余的超时时间，单位毫秒
+     */
+    public static final String HEADER = "X-Request-Timeout";
+
+    private final Duration defaultTimeout;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Deadline.bind(Deadline.after(timeoutOf(request)));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Deadline.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Deadline.clear();
+    }
+
+    private Duration timeoutOf(HttpServletRequest request) {
+        final String header = request.getHeader(HEADER);
+        if (header != null) {
+            try {
+                final long millis = Long.parseLong(header.trim());
+                if (millis > 0) {
+                    return Duration.ofMillis(Math.min(millis, defaultTimeout.toMillis()));
+                }
+            } catch (NumberFormatException ignored) {
+                // 格式不对时使用默认值
+            }
+        }
+        return defaultTimeout;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.tran.config;
+
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.support.MergedBeanDefinitionPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+
+/**
+ * mapper 的 AOT 支持：扫描出的 MapperFactoryBean 定义只带了接口名字符串，AOT 生成代码时既解析不出构造参数，
+ * 也推断不出 bean 的类型（按 UserMapper 注入会失败）。这里在 bean 定义合并时补上接口 Class 和泛型类型，
+ * 非 AOT 运行时同样无害。另见 {@link MapperScannerAotExcludeFilter}
+ */
+@Configuration(proxyBeanMethods = false)
+public class MapperAotConfig {
+
+    @Bean
+    static MergedBeanDefinitionPostProcessor mapperFactoryBeanTypeResolver() {
+        return new MergedBeanDefinitionPostProcessor() {
+            @Override
+            public void postProcessMergedBeanDefinition(RootBeanDefinition beanDefinition, Class<?> beanType, String beanName) {
+                if (!beanDefinition.hasBeanClass() || !MapperFactoryBean.class.isAssignableFrom(beanDefinition.getBeanClass())
+                        || !beanDefinition.getResolvableType().hasUnresolvableGenerics()) {
+                    return;
+                }
+                if (beanDefinition.getPropertyValues().get("mapperInterface") instanceof Class<?> mapperInterface) {
+                    final ConstructorArgumentValues args = new ConstructorArgumentValues();
+                    args.addGenericArgumentValue(mapperInterface);
+                    beanDefinition.setConstructorArgumentValues(args);
+                    beanDefinition.setTargetType(ResolvableType.forClassWithGenerics(beanDefinition.getBeanClass(), mapperInterface));
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.tran.config;
+
+import org.mybatis.spring.mapper.MapperScannerConfigurer;
+import org.springframework.beans.factory.aot.BeanRegistrationExcludeFilter;
+import org.springframework.beans.factory.support.RegisteredBean;
+
+/**
+ * AOT 处理时 mapper 已经扫描并生成了 bean 定义，运行时不再注册 MapperScannerConfigurer，
+ * 否则会再扫描一遍，和生成的定义重名冲突。在 META-INF/spring/aot.factories 中注册，另见 {@link MapperAotConfig}
+ */
+class MapperScannerAotExcludeFilter implements BeanRegistrationExcludeFilter {
+
+    @Override
+    public boolean isExcludedFromAotProcessing(RegisteredBean registeredBean) {
+        return MapperScannerConfigurer.class.isAssignableFrom(registeredBean.getBeanClass());
+    }
+}
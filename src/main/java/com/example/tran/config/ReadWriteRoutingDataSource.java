@@ -0,0 +1,97 @@
+package com.example.tran.config;
+
+import com.example.tran.utils.DataSourceRouting;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离：标记为只读的线程（{@link DataSourceRouting}）或只读事务轮询使用副本，其余走主库
+ * <p>
+ * 分片：线程绑定了分片号时使用对应的分片库，优先于读写分离。
+ * <p>
+ * 事务开始时就会取连接，需要包在 LazyConnectionDataSourceProxy 里，
+ * 否则 @Transactional(readOnly = true) 的只读标记在取连接之后才设置，路由不到副本。
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final String[] replicaKeys;
+    private final List<DataSource> shards;
+    private final String[] shardKeys;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, List<DataSource> shards) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.replicaKeys = new String[replicas.size()];
+        this.shards = shards;
+        this.shardKeys = new String[shards.size()];
+        final Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys[i] = "replica-" + i;
+            targets.put(replicaKeys[i], replicas.get(i));
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            shardKeys[i] = "shard-" + i;
+            targets.put(shardKeys[i], shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        final Integer shard = DataSourceRouting.shard();
+        if (shard != null && shardKeys.length > 0) {
+            if (shard < 0 || shard >= shardKeys.length) {
+                throw new IllegalStateException("分片号 " + shard + " 超出范围, 共 " + shardKeys.length + " 个分片");
+            }
+            return shardKeys[shard];
+        }
+        if (replicaKeys.length > 0
+                && (DataSourceRouting.isReadOnly() || TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            // 轮询，各副本连接池独立，读并发随副本数扩展
+            return replicaKeys[Math.floorMod(next.getAndIncrement(), replicaKeys.length)];
+        }
+        return PRIMARY;
+    }
+
+    public int replicaCount() {
+        return replicaKeys.length;
+    }
+
+    public int shardCount() {
+        return shardKeys.length;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (DataSource replica : replicas) {
+            close(replica);
+        }
+        for (DataSource shard : shards) {
+            close(shard);
+        }
+        close(primary);
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
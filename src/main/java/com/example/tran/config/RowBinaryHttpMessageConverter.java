@@ -0,0 +1,93 @@
+package com.example.tran.config;
+
+import com.example.tran.codec.BinaryInput;
+import com.example.tran.codec.BinaryOutput;
+import com.example.tran.codec.BinaryOutputPool;
+import com.example.tran.codec.RowCodec;
+import com.example.tran.codec.RowListFormat;
+import com.example.tran.codec.UserCodecs;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * List&lt;User&gt; / List&lt;User2&gt; 的二进制表示，仅在 Accept 明确要求 {@link #MEDIA_TYPE} 时生效，
+ * 默认仍返回 JSON
+ *
+ * @author zyf
+ * @date 2024/06/14
+ */
+public class RowBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-row-binary";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private final BinaryOutputPool pool = new BinaryOutputPool(64, 8 * 1024, 256 * 1024);
+
+    public RowBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return codecOf(type) != null && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return codecOf(type) != null && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(Object rows, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        @SuppressWarnings("unchecked") final RowCodec<Object> codec = (RowCodec<Object>) codecOf(type);
+        final BinaryOutput buf = pool.acquire();
+        try {
+            RowListFormat.write(codec, (Collection<?>) rows, buf, outputMessage.getBody());
+        } finally {
+            pool.release(buf);
+        }
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return RowListFormat.read(codecOf(type), BinaryInput.of(inputMessage.getBody().readAllBytes()));
+        } catch (RuntimeException e) {
+            throw new HttpMessageNotReadableException("二进制行列表解析失败: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        // 只有原始类型时无法确定元素类型，canRead 不会放行到这里
+        throw new HttpMessageNotReadableException("缺少元素类型", inputMessage);
+    }
+
+    @Nullable
+    private static RowCodec<?> codecOf(@Nullable Type type) {
+        if (type == null) {
+            return null;
+        }
+        final ResolvableType resolved = ResolvableType.forType(type);
+        final Class<?> raw = resolved.resolve();
+        if (raw == null || !Collection.class.isAssignableFrom(raw)) {
+            return null;
+        }
+        final Class<?> element = resolved.asCollection().resolveGeneric(0);
+        return element == null ? null : UserCodecs.forType(element);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.tran.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * 大结果集落盘配置，见 {@link com.example.tran.codec.MappedSpill}
+ *
+ * <pre>
+ * tran:
+ *   spill:
+ *     directory: /data/spill
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "tran.spill")
+public class SpillProperties {
+
+    /**
+     * 落盘目录，不配置时为 java.io.tmpdir
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"));
+}
@@ -0,0 +1,39 @@
+package com.example.tran.config;
+
+import com.example.tran.utils.Deadline;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按当前线程的截止时间设置 JDBC 语句超时；截止时间已过时不再执行 SQL
+ */
+@Component
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class StatementDeadlineInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        final Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return invocation.proceed();
+        }
+        deadline.check("SQL");
+        final Statement statement = (Statement) invocation.proceed();
+        // JDBC 超时只能精确到秒，向上取整
+        final long remainingMillis = deadline.remaining(TimeUnit.MILLISECONDS);
+        final int seconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (remainingMillis + 999) / 1000));
+        final int configured = statement.getQueryTimeout();
+        if (configured == 0 || seconds < configured) {
+            statement.setQueryTimeout(seconds);
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.tran.config;
+
+import com.example.tran.trace.Span;
+import com.example.tran.trace.Tracer;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * 每个请求一个根 span，traceId 通过 {@link #HEADER} 响应头返回给调用方
+ */
+public class TraceInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String HEADER = "X-Trace-Id";
+
+    private static final String SPAN = TraceInterceptor.class.getName() + ".SPAN";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            final Object span = request.getAttribute(SPAN);
+            if (span != null) {
+                Tracer.bind((Span) span);
+            }
+            return true;
+        }
+        final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        final Span span = Tracer.start(null, request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI()));
+        request.setAttribute(SPAN, span);
+        response.setHeader(HEADER, span.getTraceId());
+        Tracer.bind(span);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Tracer.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        final Object attribute = request.getAttribute(SPAN);
+        if (attribute != null) {
+            final Span span = (Span) attribute;
+            span.tag("status", response.getStatus());
+            if (ex != null) {
+                span.error(ex);
+            }
+            span.close();
+            request.removeAttribute(SPAN);
+        }
+        Tracer.clear();
+    }
+}
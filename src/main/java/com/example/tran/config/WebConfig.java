@@ -0,0 +1,34 @@
+package com.example.tran.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final Bulkheads bulkheads;
+
+    @Value("${tran.deadline.default-timeout:10s}")
+    private Duration defaultTimeout;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // 追加在 Jackson 之后，Accept 为 */* 时仍优先返回 JSON
+        converters.add(new RowBinaryHttpMessageConverter());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new TraceInterceptor());
+        registry.addInterceptor(new DeadlineInterceptor(defaultTimeout));
+        registry.addInterceptor(new BulkheadInterceptor(bulkheads));
+    }
+}
@@ -3,9 +3,30 @@ package com.example.tran.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.tran.entity.User2;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.List;
 
 public interface User2Mapper extends BaseMapper<User2> {
 
+    /**
+     * 全表查询，静态 SQL，不经过 Wrapper 的动态拼接
+     */
+    List<User2> selectAll();
+
+    /**
+     * 全表流式查询，逐行回调
+     */
+    void selectAll(ResultHandler<User2> handler);
+
+    /**
+     * 按 id 升序的游标分页
+     *
+     * @param afterId 上一页最后一个 id，为 null 时从头开始
+     */
+    List<User2> selectAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
 //    List<User> test();
 
 //    List<User> test2();
@@ -0,0 +1,72 @@
+package com.example.tran.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 2 的幂微秒分桶的耗时直方图，无锁，分位数取所在桶的上界
+ *
+ * @author zyf
+ * @date 2024/06/21
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        final long micros = Math.max(1, nanos / 1000);
+        final int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1_000_000.0;
+    }
+
+    public double getMeanMillis() {
+        final long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / n;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @param percentile 0~1
+     * @return 毫秒，所在桶的上界
+     */
+    public double percentileMillis(double percentile) {
+        final long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(percentile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return Math.min((1L << (i + 1)) / 1000.0, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+}
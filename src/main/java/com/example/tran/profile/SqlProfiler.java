@@ -0,0 +1,247 @@
+package com.example.tran.profile;
+
+import com.example.tran.trace.Span;
+import com.example.tran.trace.SpanCollector;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL 统计：每种语句的耗时分布和行数，每个请求发出的语句数，以及 N+1 嫌疑
+ * <p>
+ * 请求（或 PkSync 任务组）按 traceId 归并，跨线程的任务也算在同一个请求里；
+ * 根 span 结束时结算该请求，同一形状的语句在一个请求内执行次数达到阈值即记为 N+1
+ */
+@Slf4j
+@Component
+public class SqlProfiler {
+
+    /**
+     * 语句形状个数上限，防止拼接字面量的 SQL 把统计撑爆
+     */
+    private static final int MAX_SHAPES = 1000;
+    private static final int MAX_OPEN_TRACES = 10_000;
+    private static final int MAX_FINDINGS = 200;
+    /**
+     * 请求受截止时间限制，超过该时间根 span 还没结束的 trace 视为泄漏，表满时才清理
+     */
+    private static final long STALE_TRACE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long FULL_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int nPlusOneThreshold;
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, TraceCounts> openTraces = new ConcurrentHashMap<>();
+    private final Deque<NPlusOne> findings = new ConcurrentLinkedDeque<>();
+    /**
+     * 表满时没有计入任何请求的语句数
+     */
+    private final LongAdder untracked = new LongAdder();
+    private final AtomicLong lastFullCheck = new AtomicLong(System.nanoTime() - FULL_CHECK_INTERVAL_NANOS);
+
+    public SqlProfiler(@Value("${tran.sql-profiler.n-plus-one-threshold:3}") int nPlusOneThreshold,
+                       SpanCollector spanCollector) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        spanCollector.addListener(this::onSpanFinished);
+    }
+
+    /**
+     * @param statementId mapper 语句 id
+     * @param sql         实际执行的 SQL
+     * @param traceId     所属请求，可以为 null
+     * @param rows        返回行数或影响行数，未知时为负数
+     */
+    public void record(String statementId, String sql, String traceId, long nanos, long rows) {
+        final String shape = statementId + "|" + normalize(sql);
+        StatementStats stats = statements.get(shape);
+        if (stats == null) {
+            if (statements.size() >= MAX_SHAPES) {
+                stats = statements.computeIfAbsent(statementId + "|<other>", k -> new StatementStats(statementId, "<other>"));
+            } else {
+                stats = statements.computeIfAbsent(shape, k -> new StatementStats(statementId, normalize(sql)));
+            }
+        }
+        stats.record(nanos, rows);
+
+        if (traceId != null) {
+            final TraceCounts counts = openTraces.get(traceId);
+            if (counts != null) {
+                counts.add(shape);
+            } else if (openTraces.size() < MAX_OPEN_TRACES || evictStale()) {
+                openTraces.computeIfAbsent(traceId, k -> new TraceCounts()).add(shape);
+            } else {
+                // 表满时不再跟踪新的请求，已在跟踪中的请求计数不受影响
+                untracked.increment();
+            }
+        }
+    }
+
+    /**
+     * 清理长时间没有结束的 trace，表满时最多每秒扫描一次
+     *
+     * @return 清理后是否有空位
+     */
+    private boolean evictStale() {
+        final long now = System.nanoTime();
+        final long last = lastFullCheck.get();
+        if (now - last < FULL_CHECK_INTERVAL_NANOS || !lastFullCheck.compareAndSet(last, now)) {
+            return false;
+        }
+        final int before = openTraces.size();
+        openTraces.values().removeIf(counts -> now - counts.startNanos > STALE_TRACE_NANOS);
+        final int size = openTraces.size();
+        if (size >= MAX_OPEN_TRACES) {
+            log.warn("SQL 统计跟踪中的请求数达到上限 {}, 新请求的语句暂不计入, 累计 {} 条", MAX_OPEN_TRACES, untracked.sum());
+            return false;
+        }
+        log.debug("SQL 统计清理 {} 个未结束的请求", before - size);
+        return true;
+    }
+
+    private void onSpanFinished(Span span) {
+        if (span.getParentId() != null) {
+            return;
+        }
+        final TraceCounts counts = openTraces.remove(span.getTraceId());
+        final int total = counts == null ? 0 : counts.total.get();
+        endpoints.computeIfAbsent(span.getName(), EndpointStats::new).record(total);
+        if (counts == null) {
+            return;
+        }
+        counts.byShape.forEach((shape, repeats) -> {
+            if (repeats.get() >= nPlusOneThreshold) {
+                findings.addFirst(new NPlusOne(span.getName(), shape, repeats.get(), span.getTraceId(), System.currentTimeMillis()));
+                while (findings.size() > MAX_FINDINGS) {
+                    findings.pollLast();
+                }
+            }
+        });
+    }
+
+    public Map<String, Object> snapshot() {
+        final List<StatementStats> byTime = new ArrayList<>(statements.values());
+        byTime.sort(Comparator.comparingDouble((StatementStats s) -> s.latency.getTotalMillis()).reversed());
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statements", byTime.stream().map(StatementStats::toMap).toList());
+        result.put("requests", endpoints.values().stream().map(EndpointStats::toMap).toList());
+        result.put("nPlusOne", new ArrayList<>(findings));
+        result.put("untrackedStatements", untracked.sum());
+        return result;
+    }
+
+    public void reset() {
+        statements.clear();
+        endpoints.clear();
+        findings.clear();
+        untracked.reset();
+    }
+
+    static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+
+    private static final class TraceCounts {
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger total = new AtomicInteger();
+        private final Map<String, AtomicInteger> byShape = new ConcurrentHashMap<>();
+
+        void add(String shape) {
+            total.incrementAndGet();
+            byShape.computeIfAbsent(shape, k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private static final class StatementStats {
+        private final String statement;
+        private final String sql;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong maxRows = new AtomicLong();
+
+        StatementStats(String statement, String sql) {
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        void record(long nanos, long rowCount) {
+            latency.record(nanos);
+            if (rowCount >= 0) {
+                rows.add(rowCount);
+                maxRows.accumulateAndGet(rowCount, Math::max);
+            }
+        }
+
+        Map<String, Object> toMap() {
+            final Map<String, Object> map = new LinkedHashMap<>();
+            map.put("statement", statement);
+            map.put("sql", sql);
+            map.put("count", latency.getCount());
+            map.put("totalMillis", latency.getTotalMillis());
+            map.put("meanMillis", latency.getMeanMillis());
+            map.put("p50Millis", latency.percentileMillis(0.5));
+            map.put("p95Millis", latency.percentileMillis(0.95));
+            map.put("p99Millis", latency.percentileMillis(0.99));
+            map.put("maxMillis", latency.getMaxMillis());
+            map.put("rows", rows.sum());
+            map.put("maxRows", maxRows.get());
+            return map;
+        }
+    }
+
+    private static final class EndpointStats {
+        private final String endpoint;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+
+        EndpointStats(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        void record(int count) {
+            requests.increment();
+            statements.add(count);
+            maxStatements.accumulateAndGet(count, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            final long n = requests.sum();
+            final Map<String, Object> map = new LinkedHashMap<>();
+            map.put("endpoint", endpoint);
+            map.put("requests", n);
+            map.put("statements", statements.sum());
+            map.put("avgStatementsPerRequest", n == 0 ? 0 : (double) statements.sum() / n);
+            map.put("maxStatementsPerRequest", maxStatements.get());
+            return map;
+        }
+    }
+
+    /**
+     * 一次请求内同一形状的语句重复执行
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class NPlusOne {
+        private final String endpoint;
+        private final String shape;
+        private final int repeats;
+        private final String traceId;
+        private final long timestamp;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.tran.profile;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.example.tran.trace.Span;
+import com.example.tran.trace.Tracer;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.util.Collection;
+
+/**
+ * 在 StatementHandler 层计时，此时动态 SQL 已经生成，可以按实际 SQL 区分语句形状
+ */
+@Component
+@RequiredArgsConstructor
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = StatementHandler.class, method = "update", args = {Statement.class}),
+        @Signature(type = StatementHandler.class, method = "batch", args = {Statement.class})
+})
+public class SqlProfilerInterceptor implements Interceptor {
+
+    private final SqlProfiler sqlProfiler;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        final long start = System.nanoTime();
+        final Object result = invocation.proceed();
+        final long nanos = System.nanoTime() - start;
+
+        final PluginUtils.MPStatementHandler handler = PluginUtils.mpStatementHandler((StatementHandler) invocation.getTarget());
+        long rows = -1;
+        if (result instanceof Collection<?> list) {
+            rows = list.size();
+        } else if (result instanceof Integer count) {
+            rows = count;
+        }
+        final Span span = Tracer.current();
+        sqlProfiler.record(handler.mappedStatement().getId(), handler.boundSql().getSql(),
+                span == null ? null : span.getTraceId(), nanos, rows);
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.tran.service;
+
+import com.example.tran.entity.User;
+import com.example.tran.entity.User2;
+import com.example.tran.mapper.User2Mapper;
+import com.example.tran.mapper.UserMapper;
+import com.example.tran.shard.ShardTemplate;
+import com.example.tran.shard.ShardedTable;
+import org.springframework.stereotype.Service;
+
+/**
+ * user / user2 的分片访问入口，分片规则见 {@link ShardTemplate}
+ */
+@Service
+public class ShardedUserService {
+
+    private final ShardedTable<User> user;
+    private final ShardedTable<User2> user2;
+
+    public ShardedUserService(ShardTemplate shardTemplate, UserMapper userMapper, User2Mapper user2Mapper) {
+        this.user = new ShardedTable<>("user", shardTemplate, userMapper, User::getId, userMapper::selectAfter);
+        this.user2 = new ShardedTable<>("user2", shardTemplate, user2Mapper, User2::getId, user2Mapper::selectAfter);
+    }
+
+    public ShardedTable<User> user() {
+        return user;
+    }
+
+    public ShardedTable<User2> user2() {
+        return user2;
+    }
+}
@@ -1,13 +1,19 @@
 package com.example.tran.service;
 
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.tran.change.TableVersions;
+import com.example.tran.change.VersionedCache;
+import com.example.tran.codec.MappedSpill;
+import com.example.tran.codec.UserCodecs;
+import com.example.tran.config.SpillProperties;
 import com.example.tran.entity.User2;
 import com.example.tran.mapper.User2Mapper;
+import com.example.tran.utils.DataSourceRouting;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -21,9 +27,29 @@ public class User2Service extends ServiceImpl<User2Mapper, User2> implements ISe
      * user dao.
      */
     private final User2Mapper user2Mapper;
+    private final TableVersions tableVersions;
+    private final SpillProperties spillProperties;
+    private final VersionedCache<List<User2>> listCache = new VersionedCache<>();
 
 
     public List<User2> findAll() {
-        return user2Mapper.selectList(Wrappers.emptyWrapper());
+        return DataSourceRouting.readOnly(user2Mapper::selectAll);
+    }
+
+    /**
+     * 按表版本缓存的全表数据，表没有提交过新的写操作时不查库。返回的列表只读
+     */
+    public List<User2> findAllCached() {
+        // 缓存按主库提交后的版本号区分，从副本加载可能把旧数据存到新版本下，所以固定读主库
+        return listCache.get(tableVersions.version(User2.class),
+                () -> Collections.unmodifiableList(DataSourceRouting.primary(user2Mapper::selectAll)));
+    }
+
+    /**
+     * 全表查询结果写入 mmap 文件，遍历时逐行解码，用于超出堆大小的导出。调用方负责 close
+     */
+    public MappedSpill<User2> findAllSpilled() {
+        return MappedSpill.spill(UserCodecs.USER2, spillProperties.getDirectory(),
+                row -> user2Mapper.selectAll(ctx -> row.accept(ctx.getResultObject())));
     }
 }
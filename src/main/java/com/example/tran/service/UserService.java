@@ -1,21 +1,33 @@
 package com.example.tran.service;
 
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.tran.change.TableVersions;
+import com.example.tran.change.VersionedCache;
+import com.example.tran.codec.MappedSpill;
+import com.example.tran.codec.UserCodecs;
+import com.example.tran.config.Bulkheads;
+import com.example.tran.config.SpillProperties;
 import com.example.tran.entity.User;
 import com.example.tran.mapper.User2Mapper;
 import com.example.tran.mapper.UserMapper;
+import com.example.tran.utils.DataSourceRouting;
 import com.example.tran.utils.PkSync;
+import com.example.tran.utils.TaskPolicy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -29,11 +41,34 @@ public class UserService extends ServiceImpl<UserMapper, User> implements IServi
      */
     private final UserMapper userMapper;
     private final User2Mapper user2Mapper;
+    private final TableVersions tableVersions;
+    private final Bulkheads bulkheads;
+    private final SpillProperties spillProperties;
+    private final VersionedCache<List<User>> listCache = new VersionedCache<>();
 
-    public static final ThreadPoolExecutor poolExecutor;
+    @Value("${tran.pool.warm-up:true}")
+    private boolean warmUpPool;
 
-    static {
-        poolExecutor = new ThreadPoolExecutor(50, 50,
+    /**
+     * check() 中按 id 查询的执行方式，启动时确定，压测按不同配置分别启动对比
+     */
+    @Value("${tran.check.executor-mode:BULKHEAD}")
+    private ExecutorMode checkExecutorMode;
+
+    /**
+     * 按 id 查询是幂等读：锁超时等瞬时错误重试，慢于历史 P95 时对冲，配置了只读副本时发到副本
+     */
+    private static final TaskPolicy READ_POLICY = TaskPolicy.retry(3).withHedgePercentile(0.95).withReadOnly(true);
+
+    /**
+     * 共享线程池，第一次使用时才创建，不占用类加载和启动的时间
+     */
+    public static ThreadPoolExecutor poolExecutor() {
+        return PoolHolder.POOL;
+    }
+
+    private static final class PoolHolder {
+        private static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(50, 50,
                 60, TimeUnit.SECONDS,
                 new ArrayBlockingQueue<>(500), // 阻塞情况下，最大执行数量： maximumPoolSize + capacity
                 (r, executor) -> {
@@ -47,9 +82,37 @@ public class UserService extends ServiceImpl<UserMapper, User> implements IServi
                 });
     }
 
+    /**
+     * 启动完成、开始接流量之后再预热线程池，避免第一批请求现场创建线程
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmUpPool) {
+            final int started = poolExecutor().prestartAllCoreThreads();
+            log.info("线程池预热完成, 启动 {} 个核心线程", started);
+        }
+    }
+
 
     public List<User> findAll() {
-        return userMapper.selectList(Wrappers.emptyWrapper());
+        return DataSourceRouting.readOnly(userMapper::selectAll);
+    }
+
+    /**
+     * 按表版本缓存的全表数据，表没有提交过新的写操作时不查库。返回的列表只读
+     */
+    public List<User> findAllCached() {
+        // 缓存按主库提交后的版本号区分，从副本加载可能把旧数据存到新版本下，所以固定读主库
+        return listCache.get(tableVersions.version(User.class),
+                () -> Collections.unmodifiableList(DataSourceRouting.primary(userMapper::selectAll)));
+    }
+
+    /**
+     * 全表查询结果写入 mmap 文件，遍历时逐行解码，用于超出堆大小的导出。调用方负责 close
+     */
+    public MappedSpill<User> findAllSpilled() {
+        return MappedSpill.spill(UserCodecs.USER, spillProperties.getDirectory(),
+                row -> userMapper.selectAll(ctx -> row.accept(ctx.getResultObject())));
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -57,7 +120,7 @@ public class UserService extends ServiceImpl<UserMapper, User> implements IServi
 
 
         {
-            final List<User> users = userMapper.selectList(Wrappers.emptyWrapper());
+            final List<User> users = userMapper.selectAll();
             for (User user : users) {
                 user.setAge(100);
             }
@@ -72,13 +135,15 @@ public class UserService extends ServiceImpl<UserMapper, User> implements IServi
 //        }
         sync();
 
-        PkSync.sync("test", poolExecutor)
-                .add("1L", () -> queryById(1L))
-                .add("2L", () -> queryById(2L))
-                .add("3L", () -> queryById(3L))
-                .add("4L", () -> queryById(4L))
-                .add("5L", () -> queryById(5L))
-                .join(5, TimeUnit.SECONDS);
+        switch (checkExecutorMode) {
+            case INLINE -> {
+                for (long id = 1; id <= 5; id++) {
+                    queryById(id);
+                }
+            }
+            case ASYNC -> queryByIds(poolExecutor());
+            default -> queryByIds(bulkheads.executor("test", poolExecutor()));
+        }
 
 //        PkSync.of(poolExecutor)
 //                .add("1", () -> {
@@ -115,6 +180,16 @@ public class UserService extends ServiceImpl<UserMapper, User> implements IServi
     }
 
 
+    private void queryByIds(Executor executor) {
+        PkSync.sync("test", executor)
+                .add("1L", () -> queryById(1L), READ_POLICY)
+                .add("2L", () -> queryById(2L), READ_POLICY)
+                .add("3L", () -> queryById(3L), READ_POLICY)
+                .add("4L", () -> queryById(4L), READ_POLICY)
+                .add("5L", () -> queryById(5L), READ_POLICY)
+                .join(5, TimeUnit.SECONDS);
+    }
+
     @Async
     @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRES_NEW)
     public void sync() {
@@ -123,7 +198,23 @@ public class UserService extends ServiceImpl<UserMapper, User> implements IServi
 
     public void queryById(long id) {
         // 子线程中的事务
-        final List<User> temp = userMapper.selectList(Wrappers.<User>lambdaQuery().eq(User::getId, id));
-        log.info(String.valueOf(temp.get(0).getAge()));
+        // selectById 是启动时生成好的语句，不用每次构造 Wrapper、拼接 SQL 片段
+        final User user = userMapper.selectById(id);
+        log.info(String.valueOf(user.getAge()));
+    }
+
+    public enum ExecutorMode {
+        /**
+         * 子线程事务，在共享线程池 {@link #poolExecutor()} 上执行，"test" 分组的舱壁限流
+         */
+        BULKHEAD,
+        /**
+         * 子线程事务，直接提交到共享线程池 {@link #poolExecutor()}，不限流
+         */
+        ASYNC,
+        /**
+         * 在当前线程的事务里依次执行
+         */
+        INLINE
     }
 }
@@ -0,0 +1,74 @@
+package com.example.tran.service;
+
+import com.example.tran.columnar.ColumnarTable;
+import com.example.tran.entity.User;
+import com.example.tran.entity.User2;
+import com.example.tran.mapper.User2Mapper;
+import com.example.tran.mapper.UserMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * user / user2 的列式快照，定时整表刷新，统计接口只读快照不查库
+ * <p>
+ * 定时任务只在 bean 创建时注册，懒加载模式下也要在启动时创建
+ */
+@Slf4j
+@Lazy(false)
+@Service
+@RequiredArgsConstructor
+public class UserSnapshotService {
+
+    private final UserMapper userMapper;
+    private final User2Mapper user2Mapper;
+
+    private volatile ColumnarTable userSnapshot;
+    private volatile ColumnarTable user2Snapshot;
+
+    public ColumnarTable user() {
+        ColumnarTable snapshot = userSnapshot;
+        if (snapshot == null) {
+            snapshot = refreshUser();
+        }
+        return snapshot;
+    }
+
+    public ColumnarTable user2() {
+        ColumnarTable snapshot = user2Snapshot;
+        if (snapshot == null) {
+            snapshot = refreshUser2();
+        }
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${tran.snapshot.refresh-interval:PT1M}",
+            initialDelayString = "${tran.snapshot.refresh-interval:PT1M}")
+    public void refresh() {
+        refreshUser();
+        refreshUser2();
+    }
+
+    public synchronized ColumnarTable refreshUser() {
+        final long start = System.currentTimeMillis();
+        final ColumnarTable.Builder<User> builder =
+                ColumnarTable.builder(User::getId, User::getName, User::getAge, User::getEmail);
+        // 流式读取，不在堆上保留整表的 List<User>
+        userMapper.selectAll(ctx -> builder.add(ctx.getResultObject()));
+        userSnapshot = builder.build();
+        log.debug("user 快照刷新完成, {} 行, 耗时 {} ms", userSnapshot.size(), System.currentTimeMillis() - start);
+        return userSnapshot;
+    }
+
+    public synchronized ColumnarTable refreshUser2() {
+        final long start = System.currentTimeMillis();
+        final ColumnarTable.Builder<User2> builder =
+                ColumnarTable.builder(User2::getId, User2::getName, User2::getAge, User2::getEmail);
+        user2Mapper.selectAll(ctx -> builder.add(ctx.getResultObject()));
+        user2Snapshot = builder.build();
+        log.debug("user2 快照刷新完成, {} 行, 耗时 {} ms", user2Snapshot.size(), System.currentTimeMillis() - start);
+        return user2Snapshot;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.tran.service;
+
+import com.example.tran.change.TableVersions;
+import com.example.tran.codec.UserCodecs;
+import com.example.tran.entity.User;
+import com.example.tran.writebehind.WriteBehindBuffer;
+import com.example.tran.writebehind.WriteBehindProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * user 的高频小更新入口：开启 tran.write-behind.enabled 后更新先进写缓冲，定时批量落库，关闭时直接按 id 写库
+ * <p>
+ * 按 id 读和列表读都叠加缓冲中尚未落库的值。表版本只随落库的提交递增，列表缓存不因缓冲写入失效；
+ * ETag 由表版本和缓冲序号组成。
+ * 定时任务只在 bean 创建时注册，懒加载模式下也要在启动时创建，同时完成日志回放
+ */
+@Slf4j
+@Lazy(false)
+@Service
+public class UserWriteBehindService implements DisposableBean {
+
+    /**
+     * 与 schema 中的列宽一致，超长的更新在入口拒绝，不进缓冲
+     */
+    private static final int NAME_MAX_LENGTH = 30;
+    private static final int EMAIL_MAX_LENGTH = 50;
+
+    private final UserService userService;
+    private final TableVersions tableVersions;
+    private final WriteBehindBuffer<User> buffer;
+
+    public UserWriteBehindService(UserService userService, TableVersions tableVersions, WriteBehindProperties properties) {
+        this.userService = userService;
+        this.tableVersions = tableVersions;
+        if (!properties.isEnabled()) {
+            this.buffer = null;
+            return;
+        }
+        Path journalDirectory = null;
+        if (properties.getDurability() != WriteBehindProperties.Durability.NONE) {
+            journalDirectory = properties.getJournalDirectory() != null ? properties.getJournalDirectory()
+                    : Path.of(System.getProperty("java.io.tmpdir"), "spring-tran", "journal");
+        }
+        this.buffer = new WriteBehindBuffer<>(UserCodecs.USER, User::getId,
+                userService::updateBatchById, properties.getMaxPending(), journalDirectory,
+                properties.getDurability() == WriteBehindProperties.Durability.FSYNC);
+    }
+
+    public boolean enabled() {
+        return buffer != null;
+    }
+
+    /**
+     * 按 id 更新，null 字段不修改
+     *
+     * @throws IllegalArgumentException 没有要修改的字段，或字段超长
+     */
+    public void update(User user) {
+        validate(user);
+        if (buffer == null) {
+            userService.updateById(user);
+        } else {
+            buffer.update(user);
+        }
+    }
+
+    private static void validate(User user) {
+        if (user.getName() == null && user.getAge() == null && user.getEmail() == null) {
+            throw new IllegalArgumentException("没有要修改的字段");
+        }
+        if (user.getName() != null && user.getName().length() > NAME_MAX_LENGTH) {
+            throw new IllegalArgumentException("name 超过 " + NAME_MAX_LENGTH + " 个字符");
+        }
+        if (user.getEmail() != null && user.getEmail().length() > EMAIL_MAX_LENGTH) {
+            throw new IllegalArgumentException("email 超过 " + EMAIL_MAX_LENGTH + " 个字符");
+        }
+    }
+
+    /**
+     * {@link #findAll()} 的 ETag，缓冲中有新写入时变化
+     */
+    public String etag() {
+        return buffer == null ? tableVersions.etag(User.class)
+                : tableVersions.etag(User.class, "w" + buffer.sequence());
+    }
+
+    public User getById(long id) {
+        final User user = userService.getById(id);
+        return buffer == null ? user : buffer.overlay(user);
+    }
+
+    /**
+     * 叠加缓冲后的 {@link UserService#findAllCached()}
+     */
+    public List<User> findAll() {
+        final List<User> rows = userService.findAllCached();
+        return buffer == null ? rows : buffer.overlay(rows);
+    }
+
+    public int pending() {
+        return buffer == null ? 0 : buffer.pending();
+    }
+
+    public long rejected() {
+        return buffer == null ? 0 : buffer.rejected();
+    }
+
+    @Scheduled(fixedDelayString = "${tran.write-behind.flush-interval:PT1S}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * @return 写入的行数，失败时为 0
+     */
+    public int flush() {
+        if (buffer == null) {
+            return 0;
+        }
+        try {
+            final int rows = buffer.flush();
+            if (rows > 0) {
+                log.debug("user 写缓冲刷写 {} 行", rows);
+            }
+            return rows;
+        } catch (RuntimeException e) {
+            // 缓冲和日志都保留，下次继续刷写
+            log.error("user 写缓冲刷写失败, {} 行待写入", buffer.pending(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * 关闭前把缓冲全部落库，数据源在依赖它的 bean 之后才关闭
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (buffer == null) {
+            return;
+        }
+        final int rows = flush();
+        log.info("user 写缓冲关闭, 刷写 {} 行, 剩余 {} 行保留在日志中", rows, buffer.pending());
+        buffer.close();
+    }
+}
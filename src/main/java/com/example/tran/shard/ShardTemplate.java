@@ -0,0 +1,195 @@
+package com.example.tran.shard;
+
+import com.example.tran.config.Bulkheads;
+import com.example.tran.config.DataSourceRoutingProperties;
+import com.example.tran.utils.DataSourceRouting;
+import com.example.tran.utils.Deadline;
+import com.example.tran.utils.DeadlineExceededException;
+import com.example.tran.utils.PkSync;
+import com.example.tran.utils.TaskPolicy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 按 id 取模分片：单分片读写在调用线程上执行，跨分片查询通过 PkSync 并行发到各分片再合并
+ * <p>
+ * 没有配置 tran.datasource.shards 时只有一个分片，就是主库。
+ * 每次分片访问都在自己的事务里，不支持跨分片事务。
+ */
+@Component
+public class ShardTemplate {
+
+    /**
+     * 分片查询是幂等读，瞬时错误重试
+     */
+    private static final TaskPolicy SCATTER_POLICY = TaskPolicy.retry(3);
+
+    private final int count;
+    private final Executor executor;
+    private final TransactionTemplate writeTemplate;
+    private final TransactionTemplate readTemplate;
+    private final long timeoutMillis;
+
+    public ShardTemplate(DataSourceRoutingProperties properties,
+                         Bulkheads bulkheads,
+                         @Qualifier("applicationTaskExecutor") Executor taskExecutor,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${tran.sharding.timeout:10s}") Duration timeout) {
+        this.count = Math.max(1, properties.getShards().size());
+        this.executor = bulkheads.executor("shards", taskExecutor);
+        // 挂起调用方的事务，分片号在新事务取连接之前绑定，才能路由到对应的分片库
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTemplate.setReadOnly(true);
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(long id) {
+        return Math.floorMod(id, count);
+    }
+
+    /**
+     * 在 id 所在分片的只读事务中执行
+     */
+    public <T> T read(long id, Supplier<T> work) {
+        return onShard(readTemplate, shardOf(id), work);
+    }
+
+    /**
+     * 在 id 所在分片的新事务中执行
+     */
+    public <T> T write(long id, Supplier<T> work) {
+        return onShard(writeTemplate, shardOf(id), work);
+    }
+
+    private static <T> T onShard(TransactionTemplate template, int shard, Supplier<T> work) {
+        return DataSourceRouting.onShard(shard, () -> template.execute(status -> work.get()));
+    }
+
+    /**
+     * 在全部分片上执行查询
+     *
+     * @return 分片号 -> 结果
+     */
+    public <R> SortedMap<Integer, R> scatter(String name, IntFunction<R> query) {
+        return scatter(name, IntStream.range(0, count).boxed().toList(), query);
+    }
+
+    /**
+     * 在指定分片上并行执行查询，只有一个分片时直接在调用线程上执行
+     *
+     * @param name   PkSync 分组名，用于日志和 trace
+     * @param shards 分片号
+     * @return 分片号 -> 结果，任一分片失败或超时时抛异常，不返回部分结果：
+     * 分片失败抛它的异常，请求截止时间已过抛 {@link DeadlineExceededException}，
+     * 只是超过 tran.sharding.timeout 抛 {@link ShardTimeoutException}
+     */
+    public <R> SortedMap<Integer, R> scatter(String name, Collection<Integer> shards, IntFunction<R> query) {
+        final SortedMap<Integer, R> results = new TreeMap<>();
+        if (shards.size() == 1) {
+            final int shard = shards.iterator().next();
+            results.put(shard, onShard(readTemplate, shard, () -> query.apply(shard)));
+            return results;
+        }
+        // 结果可能为 null，不能用 ConcurrentHashMap
+        final Map<Integer, R> gathered = Collections.synchronizedMap(new HashMap<>());
+        final PkSync.MySyncMethod sync = PkSync.sync(name, executor);
+        for (int shard : shards) {
+            sync.add("shard-" + shard, () -> {
+                // 子线程事务还没取连接，绑定分片号后第一条语句就会落到分片库
+                final R result = DataSourceRouting.onShard(shard, () -> query.apply(shard));
+                gathered.put(shard, result);
+            }, SCATTER_POLICY);
+        }
+        // 分片失败时 join 直接抛出该分片的异常，返回 false 只会是超时
+        if (!sync.join(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            final String missing = name + " " + shards.stream().filter(shard -> !gathered.containsKey(shard))
+                    .map(shard -> "shard-" + shard).collect(Collectors.joining(","));
+            final Deadline deadline = Deadline.current();
+            if (deadline != null && deadline.isExpired()) {
+                throw new DeadlineExceededException(missing);
+            }
+            throw new ShardTimeoutException(missing, timeoutMillis);
+        }
+        synchronized (gathered) {
+            results.putAll(gathered);
+        }
+        return results;
+    }
+
+    /**
+     * 多路归并各分片内已排好序的结果
+     *
+     * @param parts 每个分片的结果，各自按 order 有序
+     * @param skip  跳过的行数，不能为负
+     * @param limit 最多返回的行数，不能为负
+     */
+    public static <T> List<T> mergeSorted(Collection<? extends List<T>> parts, Comparator<? super T> order,
+                                          long skip, int limit) {
+        if (skip < 0 || limit < 0) {
+            throw new IllegalArgumentException("skip 和 limit 不能为负: skip=" + skip + ", limit=" + limit);
+        }
+        final PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> order.compare(a.head, b.head));
+        for (List<T> part : parts) {
+            final Iterator<T> it = part.iterator();
+            if (it.hasNext()) {
+                heap.add(new Cursor<>(it.next(), it));
+            }
+        }
+        final List<T> merged = new ArrayList<>((int) Math.min(limit, 1024));
+        long skipped = 0;
+        while (!heap.isEmpty() && merged.size() < limit) {
+            final Cursor<T> cursor = heap.poll();
+            if (skipped < skip) {
+                skipped++;
+            } else {
+                merged.add(cursor.head);
+            }
+            if (cursor.rest.hasNext()) {
+                cursor.head = cursor.rest.next();
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Cursor<T> {
+        private T head;
+        private final Iterator<T> rest;
+
+        Cursor(T head, Iterator<T> rest) {
+            this.head = head;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.tran.shard;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 跨分片查询超过 tran.sharding.timeout 仍有分片没有返回，请求本身的截止时间还没到
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ShardTimeoutException extends RuntimeException {
+
+    public ShardTimeoutException(String what, long timeoutMillis) {
+        super(what + " 超过 " + timeoutMillis + " ms 没有返回");
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.tran.shard;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * 按 id 分片的表：单行读写落到 id 所在分片，列表查询各分片并行执行后按 id 归并
+ *
+ * @param <T> 实体
+ */
+public class ShardedTable<T> {
+
+    /**
+     * 每页最多行数，每个分片都要取这么多行再归并
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final String name;
+    private final ShardTemplate shards;
+    private final BaseMapper<T> mapper;
+    private final ToLongFunction<T> idGetter;
+    private final Pager<T> pager;
+    private final Comparator<T> byId;
+
+    /**
+     * @param pager 按 id 升序的游标分页查询，见 UserMapper#selectAfter
+     */
+    public ShardedTable(String name, ShardTemplate shards, BaseMapper<T> mapper, ToLongFunction<T> idGetter, Pager<T> pager) {
+        this.name = name;
+        this.shards = shards;
+        this.mapper = mapper;
+        this.idGetter = idGetter;
+        this.pager = pager;
+        this.byId = Comparator.comparingLong(idGetter);
+    }
+
+    public T findById(long id) {
+        return shards.read(id, () -> mapper.selectById(id));
+    }
+
+    /**
+     * 只查询 id 落到的分片，结果按 id 升序
+     */
+    public List<T> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final Map<Integer, List<Long>> byShard = new TreeMap<>();
+        for (Long id : ids) {
+            byShard.computeIfAbsent(shards.shardOf(id), k -> new ArrayList<>()).add(id);
+        }
+        final Map<Integer, List<T>> parts = shards.scatter(name + " byIds", byShard.keySet(), shard -> {
+            final List<T> rows = new ArrayList<>(mapper.selectBatchIds(byShard.get(shard)));
+            rows.sort(byId);
+            return rows;
+        });
+        return ShardTemplate.mergeSorted(parts.values(), byId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 全部分片的数据，按 id 升序
+     */
+    public List<T> findAll() {
+        return ShardTemplate.mergeSorted(shards.scatter(name + " all", shard -> pager.after(null, Integer.MAX_VALUE)).values(),
+                byId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 游标分页，每个分片只取 limit 行，翻页代价与页码无关
+     *
+     * @param afterId 上一页最后一个 id，为 null 时取第一页
+     * @param limit   1 ~ {@link #MAX_PAGE_SIZE}
+     */
+    public List<T> listAfter(Long afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit 需要在 1 ~ " + MAX_PAGE_SIZE + " 之间: " + limit);
+        }
+        return ShardTemplate.mergeSorted(shards.scatter(name + " page", shard -> pager.after(afterId, limit)).values(),
+                byId, 0, limit);
+    }
+
+    /**
+     * 按页码分页，每个分片都要取前 current * size 行再归并，页码越大越慢，能用 {@link #listAfter} 时优先用它
+     *
+     * @param current 页码，从 1 开始
+     * @param size    1 ~ {@link #MAX_PAGE_SIZE}
+     */
+    public List<T> page(long current, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("size 需要在 1 ~ " + MAX_PAGE_SIZE + " 之间: " + size);
+        }
+        final long offset = (Math.max(1, current) - 1) * size;
+        final int fetch = (int) Math.min(Integer.MAX_VALUE, offset + size);
+        return ShardTemplate.mergeSorted(shards.scatter(name + " page", shard -> pager.after(null, fetch)).values(),
+                byId, offset, size);
+    }
+
+    /**
+     * 按 id 更新，不存在时插入
+     */
+    public void save(T row) {
+        shards.write(idGetter.applyAsLong(row), () -> {
+            if (mapper.updateById(row) == 0) {
+                mapper.insert(row);
+            }
+            return null;
+        });
+    }
+
+    public boolean deleteById(long id) {
+        return shards.write(id, () -> mapper.deleteById(id) > 0);
+    }
+
+    @FunctionalInterface
+    public interface Pager<T> {
+        List<T> after(Long afterId, int limit);
+    }
+}
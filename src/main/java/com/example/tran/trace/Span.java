@@ -0,0 +1,73 @@
+package com.example.tran.trace;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一段耗时操作，按 traceId 串起一次请求在各线程上的所有操作
+ * <p>
+ * 创建即开始，{@link #close()} 时结束并交给 {@link SpanCollector}；只结束一次
+ *
+ * @author zyf
+ * @date 2024/06/20
+ */
+@Getter
+public class Span implements AutoCloseable {
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentId;
+    private final String name;
+    private final String thread;
+    private final long startEpochMicros;
+    @JsonIgnore
+    private final long startNanos;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    private volatile long durationNanos = -1;
+    private volatile String error;
+
+    Span(String traceId, String spanId, String parentId, String name) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentId = parentId;
+        this.name = name;
+        this.thread = Thread.currentThread().getName();
+        this.startEpochMicros = System.currentTimeMillis() * 1000;
+        this.startNanos = System.nanoTime();
+    }
+
+    public Span tag(String key, Object value) {
+        if (value != null) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    public Span error(Throwable e) {
+        this.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return this;
+    }
+
+    public boolean isFinished() {
+        return durationNanos >= 0;
+    }
+
+    public double getDurationMillis() {
+        return durationNanos < 0 ? -1 : durationNanos / 1_000_000.0;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (isFinished()) {
+                return;
+            }
+            durationNanos = System.nanoTime() - startNanos;
+        }
+        Tracer.finish(this);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.tran.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 收集结束的 span：内存中保留最近 capacity 个，配置了 tran.trace.file 时同时按 JSON 行追加到文件
+ * <p>
+ * 构造时注册到 {@link Tracer}，懒加载模式下也要在启动时创建，否则第一次查询 /traces 之前的 span 都会丢失
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class SpanCollector implements DisposableBean {
+
+    private final int capacity;
+    private final ObjectMapper objectMapper;
+    private final Deque<Span> spans = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final BufferedWriter file;
+    private final List<Consumer<Span>> listeners = new CopyOnWriteArrayList<>();
+
+    public SpanCollector(@Value("${tran.trace.capacity:10000}") int capacity,
+                         @Value("${tran.trace.file:}") String file,
+                         ObjectMapper objectMapper) throws IOException {
+        this.capacity = capacity;
+        this.objectMapper = objectMapper;
+        if (StringUtils.hasText(file)) {
+            final Path path = Path.of(file);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            this.file = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            this.file = null;
+        }
+        Tracer.setCollector(this);
+    }
+
+    void collect(Span span) {
+        spans.addLast(span);
+        if (size.incrementAndGet() > capacity && spans.pollFirst() != null) {
+            size.decrementAndGet();
+        }
+        if (file != null) {
+            write(span);
+        }
+        for (Consumer<Span> listener : listeners) {
+            listener.accept(span);
+        }
+    }
+
+    /**
+     * span 结束时回调，在结束 span 的线程上同步执行
+     */
+    public void addListener(Consumer<Span> listener) {
+        listeners.add(listener);
+    }
+
+    private void write(Span span) {
+        try {
+            final String line = objectMapper.writeValueAsString(span);
+            synchronized (file) {
+                file.write(line);
+                file.newLine();
+                file.flush();
+            }
+        } catch (IOException e) {
+            log.warn("span 写入文件失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一条 trace 的所有 span，按开始时间排序
+     */
+    public List<Span> trace(String traceId) {
+        final List<Span> result = new ArrayList<>();
+        for (Span span : spans) {
+            if (span.getTraceId().equals(traceId)) {
+                result.add(span);
+            }
+        }
+        result.sort(Comparator.comparingLong(Span::getStartNanos));
+        return result;
+    }
+
+    /**
+     * 最近结束的根 span，新的在前
+     */
+    public List<Span> recentRoots(int limit) {
+        final List<Span> result = new ArrayList<>();
+        for (var it = spans.descendingIterator(); it.hasNext() && result.size() < limit; ) {
+            final Span span = it.next();
+            if (span.getParentId() == null) {
+                result.add(span);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        Tracer.setCollector(null);
+        if (file != null) {
+            synchronized (file) {
+                file.close();
+            }
+        }
+    }
+}
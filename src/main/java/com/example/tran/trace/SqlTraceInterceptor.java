@@ -0,0 +1,49 @@
+package com.example.tran.trace;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * 每条 mapper 语句一个 span，只在已有 trace 的线程上记录
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public class SqlTraceInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        final Span parent = Tracer.current();
+        if (parent == null) {
+            return invocation.proceed();
+        }
+        final MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        try (Span span = Tracer.start(parent, "sql " + ms.getSqlCommandType())) {
+            span.tag("statement", ms.getId());
+            try {
+                final Object result = invocation.proceed();
+                if (result instanceof Collection<?> rows) {
+                    span.tag("rows", rows.size());
+                } else if (result instanceof Integer count && count >= 0) {
+                    // 批量执行器返回的是占位值，不记录
+                    span.tag("rows", count);
+                }
+                return result;
+            } catch (Throwable e) {
+                span.error(e);
+                throw e;
+            }
+        }
+    }
+}
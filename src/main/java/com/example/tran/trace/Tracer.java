@@ -0,0 +1,100 @@
+package com.example.tran.trace;
+
+import org.slf4j.MDC;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 线程上的当前 span，以及 span 的创建
+ *
+ * <pre>
+ * try (Span span = Tracer.start("query"); Tracer.Scope ignored = Tracer.bind(span)) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/20
+ */
+public final class Tracer {
+
+    public static final String MDC_TRACE_ID = "traceId";
+    public static final String MDC_SPAN_ID = "spanId";
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private static volatile SpanCollector collector;
+
+    private Tracer() {
+    }
+
+    static void setCollector(SpanCollector collector) {
+        Tracer.collector = collector;
+    }
+
+    /**
+     * @return 当前线程上的 span，没有时为 null
+     */
+    public static Span current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以当前 span 为父创建 span，不绑定到线程
+     */
+    public static Span start(String name) {
+        return start(current(), name);
+    }
+
+    /**
+     * @param parent 父 span，为 null 时开始一条新的 trace
+     */
+    public static Span start(Span parent, String name) {
+        final String spanId = newId();
+        if (parent == null) {
+            return new Span(spanId, spanId, null, name);
+        }
+        return new Span(parent.getTraceId(), spanId, parent.getSpanId(), name);
+    }
+
+    /**
+     * 把 span 绑定为当前线程的 span，关闭 Scope 时恢复之前的
+     */
+    public static Scope bind(Span span) {
+        final Span previous = CURRENT.get();
+        set(span);
+        return () -> set(previous);
+    }
+
+    public static void clear() {
+        set(null);
+    }
+
+    static void finish(Span span) {
+        final SpanCollector current = collector;
+        if (current != null) {
+            current.collect(span);
+        }
+    }
+
+    private static void set(Span span) {
+        if (span == null) {
+            CURRENT.remove();
+            MDC.remove(MDC_TRACE_ID);
+            MDC.remove(MDC_SPAN_ID);
+        } else {
+            CURRENT.set(span);
+            MDC.put(MDC_TRACE_ID, span.getTraceId());
+            MDC.put(MDC_SPAN_ID, span.getSpanId());
+        }
+    }
+
+    private static String newId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.tran.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 舱壁隔离：从共享线程池中划出一块独立的并发额度和排队额度
+ * <p>
+ * 同时执行的任务不超过 maxConcurrent，其余在舱壁自己的队列里等待，不进入共享线程池的队列；
+ * 排队也满了直接抛 {@link BulkheadFullException}，不阻塞调用方。
+ *
+ * <pre>
+ * PkSync.of("test", new Bulkhead("test", 10, 20, poolExecutor))
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/18
+ */
+@Slf4j
+public class Bulkhead implements Executor {
+
+    @Getter
+    private final String name;
+    @Getter
+    private final int maxConcurrent;
+    @Getter
+    private final int maxQueue;
+    private final Executor delegate;
+
+    /**
+     * 已接纳（执行中 + 排队中）的任务数
+     */
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final Queue<Consumer<Runnable>> queue = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueue, Executor delegate) {
+        if (maxConcurrent <= 0 || maxQueue < 0) {
+            throw new IllegalArgumentException("bulkhead [" + name + "] 额度配置错误");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        admit(release -> delegate.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                release.run();
+            }
+        }));
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private void admit(Consumer<Runnable> start) {
+        if (admitted.incrementAndGet() > maxConcurrent + maxQueue) {
+            admitted.decrementAndGet();
+            rejected.increment();
+            throw new BulkheadFullException(name);
+        }
+        queue.offer(start);
+        drain();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty()) {
+            final int current = running.get();
+            if (current >= maxConcurrent) {
+                return;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            final Consumer<Runnable> start = queue.poll();
+            if (start == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                start.accept(this::release);
+            } catch (RuntimeException e) {
+                log.error("bulkhead [{}] 提交任务失败", name, e);
+                release();
+            }
+        }
+    }
+
+    private void release() {
+        running.decrementAndGet();
+        admitted.decrementAndGet();
+        drain();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.tran.utils;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 舱壁的并发和排队额度都已用完
+ */
+public class BulkheadFullException extends RejectedExecutionException {
+
+    public BulkheadFullException(String name) {
+        super("bulkhead [" + name + "] 已满");
+    }
+}
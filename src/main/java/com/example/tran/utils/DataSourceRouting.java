@@ -0,0 +1,104 @@
+package com.example.tran.utils;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的读写路由标记：标记为只读时，语句发到只读副本，否则走主库；绑定了分片号时发到对应的分片库
+ * <p>
+ * 只对配置了 tran.datasource.replicas / shards 的环境生效，没有副本、分片时标记无效果。
+ * 事务内的连接在第一条语句时确定，之后再切换标记不会换库。
+ * 只读副本有复制延迟，刚写入的数据要立刻读回的场景不要标记。
+ *
+ * <pre>
+ * try (DataSourceRouting.Scope ignored = DataSourceRouting.readOnly()) {
+ *     userMapper.selectById(1L);
+ * }
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/22
+ */
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    public static boolean isReadOnly() {
+        return Boolean.TRUE.equals(READ_ONLY.get());
+    }
+
+    public static Scope readOnly() {
+        return bind(true);
+    }
+
+    public static <T> T readOnly(Supplier<T> supplier) {
+        try (Scope ignored = readOnly()) {
+            return supplier.get();
+        }
+    }
+
+    /**
+     * 强制走主库，覆盖外层的只读标记。读结果要和表版本对齐（如按版本缓存）时使用，副本可能还没追上刚提交的写入。
+     * 只读事务内的连接已经确定，不受影响
+     */
+    public static <T> T primary(Supplier<T> supplier) {
+        try (Scope ignored = bind(false)) {
+            return supplier.get();
+        }
+    }
+
+    /**
+     * @param readOnly 为 false 时清除标记，线程池复用线程时不会带上上一个任务的标记
+     */
+    public static Scope bind(boolean readOnly) {
+        final Boolean previous = READ_ONLY.get();
+        set(readOnly);
+        return () -> set(Boolean.TRUE.equals(previous));
+    }
+
+    /**
+     * @return 当前线程绑定的分片号，没有时为 null
+     */
+    public static Integer shard() {
+        return SHARD.get();
+    }
+
+    public static Scope bindShard(Integer shard) {
+        final Integer previous = SHARD.get();
+        setShard(shard);
+        return () -> setShard(previous);
+    }
+
+    public static <T> T onShard(int shard, Supplier<T> supplier) {
+        try (Scope ignored = bindShard(shard)) {
+            return supplier.get();
+        }
+    }
+
+    private static void setShard(Integer shard) {
+        if (shard == null) {
+            SHARD.remove();
+        } else {
+            SHARD.set(shard);
+        }
+    }
+
+    private static void set(boolean readOnly) {
+        if (readOnly) {
+            READ_ONLY.set(Boolean.TRUE);
+        } else {
+            READ_ONLY.remove();
+        }
+    }
+
+    /**
+     * 恢复绑定前的标记
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
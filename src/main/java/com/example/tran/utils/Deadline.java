@@ -0,0 +1,91 @@
+package com.example.tran.utils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求的截止时间，在接口层创建，随 PkSync 任务带到子线程，并用于设置 JDBC 语句超时
+ *
+ * <pre>
+ * try (Deadline.Scope ignored = Deadline.bind(Deadline.after(Duration.ofSeconds(3)))) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/19
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * @return 当前线程绑定的截止时间，没有时为 null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public static Scope bind(Deadline deadline) {
+        final Deadline previous = CURRENT.get();
+        set(deadline);
+        return () -> set(previous);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    private static void set(Deadline deadline) {
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+    }
+
+    /**
+     * 本地超时与当前截止时间取较小者，没有截止时间时原样返回
+     */
+    public static long effectiveTimeoutNanos(long timeout, TimeUnit unit) {
+        final long local = unit.toNanos(timeout);
+        final Deadline deadline = current();
+        return deadline == null ? local : Math.max(0, Math.min(local, deadline.remainingNanos()));
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public long remaining(TimeUnit unit) {
+        return unit.convert(remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    public void check(String what) {
+        if (isExpired()) {
+            throw new DeadlineExceededException(what);
+        }
+    }
+
+    /**
+     * 恢复绑定前的截止时间
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.tran.utils;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 请求截止时间已过，任务或 SQL 不再执行
+ */
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String what) {
+        super(what + " 已超过请求截止时间");
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.tran.utils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * 按任务名保存最近若干次的执行耗时，供对冲执行计算分位数阈值
+ * <p>
+ * 任务名可能带数据（如按 id 命名），按最近使用淘汰，最多保留 maxKeys 个任务名
+ *
+ * @author zyf
+ * @date 2024/06/17
+ */
+public class LatencyHistory {
+
+    private static final int WINDOW = 256;
+    private static final int DEFAULT_MAX_KEYS = 1024;
+
+    private final Map<String, Window> windows;
+
+    public LatencyHistory() {
+        this(DEFAULT_MAX_KEYS);
+    }
+
+    public LatencyHistory(int maxKeys) {
+        this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    public void record(String key, long nanos) {
+        final Window window;
+        synchronized (windows) {
+            window = windows.computeIfAbsent(key, k -> new Window());
+        }
+        window.record(nanos);
+    }
+
+    /**
+     * @return 样本数不足 minSamples 时为空
+     */
+    public OptionalLong percentile(String key, double percentile, int minSamples) {
+        final Window window;
+        synchronized (windows) {
+            window = windows.get(key);
+        }
+        return window == null ? OptionalLong.empty() : window.percentile(percentile, minSamples);
+    }
+
+    public int size() {
+        synchronized (windows) {
+            return windows.size();
+        }
+    }
+
+    private static final class Window {
+        private final long[] samples = new long[WINDOW];
+        private long count;
+
+        synchronized void record(long nanos) {
+            samples[(int) (count++ % WINDOW)] = nanos;
+        }
+
+        synchronized OptionalLong percentile(double percentile, int minSamples) {
+            final int size = (int) Math.min(count, WINDOW);
+            if (size == 0 || size < minSamples) {
+                return OptionalLong.empty();
+            }
+            final long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(percentile * size) - 1;
+            return OptionalLong.of(sorted[Math.max(0, Math.min(size - 1, index))]);
+        }
+    }
+}
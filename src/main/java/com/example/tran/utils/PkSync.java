@@ -1,8 +1,11 @@
 package com.example.tran.utils;
 
 import cn.hutool.core.util.StrUtil;
+import com.example.tran.trace.Span;
+import com.example.tran.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
@@ -11,22 +14,36 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 /**
  * 异步工具类，封装意义在于用于业务代码编写简洁
+ * <p>
+ * 静态方法依赖注入进来的 {@link SpringSyncMethod}，没有 bean 注入本类，懒加载模式下也要在启动时创建
  *
  * @author zyf
  * @date 2024/05/30
  */
 @Slf4j
+@Lazy(false)
 @Component
 public class PkSync {
-    private static Executor poolExecutor;
+    private Executor poolExecutor;
     private List<CompletableFuture<Void>> futures;
     private ConcurrentStopWatch sw;
+    /**
+     * 任务组的 span，各任务的 span 挂在它下面
+     */
+    private Span span;
 
     private static SpringSyncMethod springSyncMethod;
 
+    /**
+     * 各任务的历史耗时，按 分组id + 任务名 区分，对冲执行据此计算阈值。
+     * 进程级共享，分组 id 和任务名可能带数据，按最近使用限制条数
+     */
+    private static final LatencyHistory HISTORY = new LatencyHistory();
+
     @Autowired
     public void setSpringSyncMethod(SpringSyncMethod springSyncMethod) {
         PkSync.springSyncMethod = springSyncMethod;
@@ -40,9 +57,10 @@ public class PkSync {
     }
 
     public PkSync(String id, Executor poolExecutor) {
-        PkSync.poolExecutor = poolExecutor;
+        this.poolExecutor = poolExecutor;
         this.futures = new ArrayList<>();
         this.sw = new ConcurrentStopWatch(id);
+        this.span = Tracer.start(groupSpanName(id));
     }
 
     public static PkSync of(Executor poolExecutor) {
@@ -54,25 +72,20 @@ public class PkSync {
     }
 
     public PkSync add(String taskName, Runnable runnable) {
+        return add(taskName, runnable, TaskPolicy.none());
+    }
+
+    /**
+     * 按策略执行任务，支持失败重试和对冲执行，见 {@link TaskPolicy}
+     */
+    public PkSync add(String taskName, Runnable runnable, TaskPolicy policy) {
         boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
         if (inTransaction) {
             throw new RuntimeException(StrUtil.format("当前处于事务状态无法跨线程, 请尝试使用 本类的 sync() 方法 "));
         } else {
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-                sw.start(taskName);
-                try {
-                    runnable.run();
-                } catch (Exception e) {
-                    log.error("{} 执行错误", taskName);
-                    throw new RuntimeException(e);
-                } finally {
-                    sw.stop(taskName);
-                }
-            }, poolExecutor)
-//                .exceptionally(e -> {
-//                    throw new RuntimeException(e);
-//                })
-                    ;
+            final Executor executor = poolExecutor;
+            CompletableFuture<Void> future = TaskExecution.execute(taskName, historyKey(sw, taskName), runnable, policy,
+                    task -> CompletableFuture.runAsync(task, executor), HISTORY, sw, span);
             futures.add(future);
         }
 
@@ -84,30 +97,45 @@ public class PkSync {
     }
 
     public void waitAll(long timeout, TimeUnit unit) throws Exception {
-        if (!futures.isEmpty()) {
-            boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
-            if (inTransaction) {
-                throw new RuntimeException(StrUtil.format("当前处于事务状态无法跨线程, 请尝试使用 本类的 sync() 方法 "));
-            } else {
-                final CompletableFuture[] futuresArray = futures.toArray(CompletableFuture[]::new);
-                final CompletableFuture<Void> future = CompletableFuture.allOf(futuresArray);
-                try {
-                    future.get(timeout, unit);
-                } catch (TimeoutException e) {
-                    log.error("超过执行设定的时间");
-                    sw.setMax(timeout, unit);
-                    throw e;
-                } finally {
-                    log.info(sw.prettyPrint(TimeUnit.MILLISECONDS));
+        try {
+            if (!futures.isEmpty()) {
+                boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+                if (inTransaction) {
+                    throw new RuntimeException(StrUtil.format("当前处于事务状态无法跨线程, 请尝试使用 本类的 sync() 方法 "));
+                } else {
+                    final CompletableFuture[] futuresArray = futures.toArray(CompletableFuture[]::new);
+                    final CompletableFuture<Void> future = CompletableFuture.allOf(futuresArray);
+                    // 不超过请求剩余的时间
+                    final long waitNanos = Deadline.effectiveTimeoutNanos(timeout, unit);
+                    try {
+                        future.get(waitNanos, TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException e) {
+                        log.error("超过执行设定的时间");
+                        sw.setMax(waitNanos, TimeUnit.NANOSECONDS);
+                        throw e;
+                    } finally {
+                        log.info(sw.prettyPrint(TimeUnit.MILLISECONDS));
+                    }
                 }
-            }
 
-        } else {
-            log.warn("没有任务执行");
+            } else {
+                log.warn("没有任务执行");
+            }
+        } finally {
+            // 分组 span 在构造时压栈，任何分支都要出栈，否则这个线程之后的 span 会挂到它下面
+            span.close();
         }
     }
 
 
+    private static String groupSpanName(String id) {
+        return "pksync " + (StrUtil.isEmpty(id) ? "-" : id);
+    }
+
+    private static String historyKey(ConcurrentStopWatch sw, String taskName) {
+        return sw.getId() + "#" + taskName;
+    }
+
     public static MySyncMethod sync(Executor poolExecutor) {
         return new MySyncMethod(poolExecutor);
     }
@@ -121,15 +149,19 @@ public class PkSync {
         Executor poolExecutor;
         ConcurrentStopWatch sw;
         List<Map<String, Runnable>> runnables = new ArrayList<>();
+        Map<String, TaskPolicy> policies = new HashMap<>();
+        Span span;
 
         public MySyncMethod(Executor poolExecutor) {
             this.poolExecutor = poolExecutor;
             this.sw = new ConcurrentStopWatch(StrUtil.EMPTY);
+            this.span = Tracer.start(groupSpanName(StrUtil.EMPTY));
         }
 
         public MySyncMethod(Executor poolExecutor, String id) {
             this.poolExecutor = poolExecutor;
             this.sw = new ConcurrentStopWatch(id);
+            this.span = Tracer.start(groupSpanName(id));
         }
 
         public MySyncMethod add(String taskName, Runnable runnable) {
@@ -139,25 +171,62 @@ public class PkSync {
             return this;
         }
 
-        public void join(long timeout, TimeUnit unit) {
-            final CountDownLatch cd = new CountDownLatch(runnables.size());
-            for (Map<String, Runnable> runnableMap : runnables) {
-                // 子线程中的事务
-                for (Map.Entry<String, Runnable> entry : runnableMap.entrySet()) {
-                    final String taskName = entry.getKey();
-                    final Runnable value = entry.getValue();
-                    sw.start(taskName);
-                    springSyncMethod.sync(poolExecutor, cd, value);
-                    sw.stop(taskName);
-                }
-            }
+        /**
+         * 按策略执行任务，每次重试或对冲都是一个新的子线程事务
+         */
+        public MySyncMethod add(String taskName, Runnable runnable, TaskPolicy policy) {
+            policies.put(taskName, policy);
+            return add(taskName, runnable);
+        }
+
+        /**
+         * 子线程事务在传入的线程池里执行；传入 {@link Bulkhead} 时先按舱壁额度排队，再交给它包装的线程池
+         */
+        private Function<Runnable, CompletableFuture<Void>> launcher() {
+            final Executor executor = poolExecutor;
+            return task -> CompletableFuture.runAsync(() -> springSyncMethod.run(task), executor);
+        }
+
+        /**
+         * 等待全部任务完成，任一任务失败时抛出它的异常；超时只记录日志
+         *
+         * @return 是否全部完成，超时时为 false
+         */
+        public boolean join(long timeout, TimeUnit unit) {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+            final long waitNanos = Deadline.effectiveTimeoutNanos(timeout, unit);
+            // 提交本身也可能抛异常（如舱壁已满），放在 try 内保证分组 span 关闭
             try {
-                cd.await(timeout, unit);
+                for (Map<String, Runnable> runnableMap : runnables) {
+                    // 子线程中的事务
+                    for (Map.Entry<String, Runnable> entry : runnableMap.entrySet()) {
+                        final String taskName = entry.getKey();
+                        final TaskPolicy policy = policies.getOrDefault(taskName, TaskPolicy.none());
+                        futures.add(TaskExecution.execute(taskName, historyKey(sw, taskName), entry.getValue(), policy,
+                                launcher(), HISTORY, sw, span));
+                    }
+                }
+                if (futures.isEmpty()) {
+                    log.warn("没有任务执行");
+                    return true;
+                }
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(waitNanos, TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                log.error("超过执行设定的时间");
+                sw.setMax(waitNanos, TimeUnit.NANOSECONDS);
+                return false;
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                log.info(sw.prettyPrint(TimeUnit.MILLISECONDS));
+                span.close();
+                runnables.clear();
+                policies.clear();
             }
-            log.info(sw.prettyPrint(TimeUnit.MILLISECONDS));
-            runnables.clear();
         }
 
     }
@@ -18,5 +18,14 @@ public  class SpringSyncMethod {
             cd.countDown();
         }
 
+        /**
+         * 在调用线程上开启新事务执行，异常时回滚。由调用方决定线程：PkSync 在传入的线程池里调用，
+         * 新事务不会加入调用线程上已有的事务（线程池用 CallerRuns 时也一样）
+         */
+        @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRES_NEW)
+        public void run(Runnable runnable) {
+            runnable.run();
+        }
+
 
     }
@@ -0,0 +1,62 @@
+package com.example.tran.utils;
+
+import com.example.tran.trace.Span;
+import com.example.tran.trace.Tracer;
+
+/**
+ * 提交任务时捕获调用线程上的上下文（截止时间、trace），在执行任务的子线程中恢复
+ *
+ * @author zyf
+ * @date 2024/06/19
+ */
+final class TaskContext {
+
+    private final Deadline deadline;
+    private final Span parent;
+
+    private TaskContext(Deadline deadline, Span parent) {
+        this.deadline = deadline;
+        this.parent = parent;
+    }
+
+    /**
+     * @param parent 任务 span 的父 span，为 null 时取当前线程上的 span
+     */
+    static TaskContext capture(Span parent) {
+        return new TaskContext(Deadline.current(), parent != null ? parent : Tracer.current());
+    }
+
+    Deadline deadline() {
+        return deadline;
+    }
+
+    boolean isExpired() {
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * 在任务自己的 span 下执行
+     *
+     * @param readOnly 任务内的查询是否路由到只读副本
+     */
+    void run(String taskName, int attempt, boolean hedged, boolean readOnly, Runnable runnable) {
+        try (Span span = Tracer.start(parent, taskName);
+             Deadline.Scope ignoredDeadline = Deadline.bind(deadline);
+             Tracer.Scope ignoredSpan = Tracer.bind(span);
+             DataSourceRouting.Scope ignoredRouting = DataSourceRouting.bind(readOnly)) {
+            span.tag("attempt", attempt);
+            if (hedged) {
+                span.tag("hedged", true);
+            }
+            if (readOnly) {
+                span.tag("readOnly", true);
+            }
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                span.error(e);
+                throw e;
+            }
+        }
+    }
+}
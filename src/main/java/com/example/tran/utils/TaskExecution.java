@@ -0,0 +1,169 @@
+package com.example.tran.utils;
+
+import com.example.tran.trace.Span;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 按 {@link TaskPolicy} 执行一个任务，重试和对冲的多次执行共用一个结果，先成功的生效
+ *
+ * @author zyf
+ * @date 2024/06/17
+ */
+@Slf4j
+final class TaskExecution {
+
+    /**
+     * 重试退避和对冲的定时器。到点后在这个线程上重新提交任务，线程池满时可能阻塞在拒绝策略里，
+     * 所以不用公共 ForkJoinPool，只推迟其他定时任务，不影响并行流等公共池的使用方
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "task-execution-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String taskName;
+    private final String historyKey;
+    private final Runnable runnable;
+    private final TaskPolicy policy;
+    /**
+     * 提交一次执行，返回这次执行的结果
+     */
+    private final Function<Runnable, CompletableFuture<Void>> launcher;
+    private final LatencyHistory history;
+    private final ConcurrentStopWatch sw;
+    private final TaskContext context;
+
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    /**
+     * 尚未最终失败的执行副本数（原始 + 对冲）
+     */
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private TaskExecution(String taskName, String historyKey, Runnable runnable, TaskPolicy policy,
+                          Function<Runnable, CompletableFuture<Void>> launcher, LatencyHistory history, ConcurrentStopWatch sw,
+                          Span parent) {
+        this.context = TaskContext.capture(parent);
+        this.taskName = taskName;
+        this.historyKey = historyKey;
+        this.runnable = runnable;
+        this.policy = policy;
+        this.launcher = launcher;
+        this.history = history;
+        this.sw = sw;
+    }
+
+    static CompletableFuture<Void> execute(String taskName, String historyKey, Runnable runnable, TaskPolicy policy,
+                                           Function<Runnable, CompletableFuture<Void>> launcher,
+                                           LatencyHistory history, ConcurrentStopWatch sw, Span parent) {
+        final TaskExecution execution = new TaskExecution(taskName, historyKey, runnable, policy, launcher, history, sw, parent);
+        execution.attempt(1, false);
+        return execution.result;
+    }
+
+    private void attempt(int attempt, boolean hedged) {
+        launch(attempt, hedged).whenComplete((v, e) -> {
+            if (e == null) {
+                result.complete(null);
+                return;
+            }
+            final Throwable cause = unwrap(e);
+            final long delay = policy.backoffMillis(attempt);
+            if (!result.isDone() && policy.shouldRetry(attempt, cause) && !expiresWithin(delay)) {
+                log.warn("{} 第 {} 次执行失败, {} ms 后重试: {}", taskName, attempt, delay, cause.toString());
+                TIMER.schedule(() -> attempt(attempt + 1, hedged), delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (outstanding.decrementAndGet() == 0) {
+                if (cause instanceof BulkheadFullException && policy.getFallback() != null) {
+                    log.warn("{} 被拒绝, 执行降级: {}", taskName, cause.getMessage());
+                    runFallback();
+                    return;
+                }
+                log.error("{} 执行错误", taskName);
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> launch(int attempt, boolean hedged) {
+        try {
+            return launcher.apply(() -> run(attempt, hedged));
+        } catch (RuntimeException e) {
+            // 线程池拒绝等同步异常，按一次失败处理
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void run(int attempt, boolean hedged) {
+        if (result.isDone()) {
+            // 另一份执行已经成功
+            return;
+        }
+        if (context.isExpired()) {
+            // 排队期间截止时间已过，结果已经没人要了，不再占用连接
+            throw new DeadlineExceededException(taskName);
+        }
+        if (started.compareAndSet(false, true)) {
+            sw.start(taskName);
+            result.whenComplete((v, e) -> sw.stop(taskName));
+            scheduleHedge();
+        }
+        final long begin = System.nanoTime();
+        context.run(taskName, attempt, hedged, policy.isReadOnly(), runnable);
+        history.record(historyKey, System.nanoTime() - begin);
+    }
+
+    private void runFallback() {
+        try {
+            policy.getFallback().run();
+            result.complete(null);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void scheduleHedge() {
+        if (!policy.isHedged()) {
+            return;
+        }
+        history.percentile(historyKey, policy.getHedgePercentile(), policy.getHedgeMinSamples()).ifPresent(threshold ->
+                TIMER.schedule(() -> {
+                    if (result.isDone() || context.isExpired()) {
+                        return;
+                    }
+                    outstanding.incrementAndGet();
+                    if (result.isDone()) {
+                        // 原始执行恰好在这之间最终失败，不再对冲
+                        outstanding.decrementAndGet();
+                        return;
+                    }
+                    log.info("{} 已超过历史 P{} 耗时 {} ms, 发起对冲执行", taskName,
+                            Math.round(policy.getHedgePercentile() * 100), TimeUnit.NANOSECONDS.toMillis(threshold));
+                    attempt(1, true);
+                }, threshold, TimeUnit.NANOSECONDS));
+    }
+
+    private boolean expiresWithin(long millis) {
+        final Deadline deadline = context.deadline();
+        return deadline != null && deadline.remaining(TimeUnit.MILLISECONDS) <= millis;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.tran.utils;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.With;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * PkSync 单个任务的执行策略：失败重试（指数退避 + 抖动）和对冲执行
+ * <p>
+ * 对冲：任务运行时间超过该任务历史耗时的某个分位数后，再提交一份相同的任务，谁先成功用谁。
+ * 只能用于幂等的读任务。
+ * <p>
+ * 降级：提交到 {@link Bulkhead} 被拒绝时执行 fallback 代替，不算失败。
+ * <p>
+ * 只读：任务内的查询路由到只读副本，分担主库的读压力。
+ *
+ * <pre>
+ * PkSync.of("test", poolExecutor)
+ *         .add("1L", () -> queryById(1L), TaskPolicy.retry(3).withHedgePercentile(0.95))
+ *         .waitAll(5, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/17
+ */
+@Getter
+@With
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class TaskPolicy {
+
+    private static final TaskPolicy NONE = new TaskPolicy(1, Duration.ofMillis(50), Duration.ofSeconds(1),
+            TaskPolicy::isTransient, 0, 20, null, false);
+
+    /**
+     * 最大执行次数，1 表示不重试
+     */
+    private final int maxAttempts;
+    /**
+     * 首次重试前的退避时间，之后每次翻倍
+     */
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    /**
+     * 哪些异常可以重试，默认只重试锁超时、死锁等瞬时数据库错误
+     */
+    private final Predicate<Throwable> retryOn;
+    /**
+     * 对冲阈值取历史耗时的分位数，0 表示不对冲
+     */
+    private final double hedgePercentile;
+    /**
+     * 历史样本数达到该值后才开始对冲
+     */
+    private final int hedgeMinSamples;
+    /**
+     * 舱壁额度用完被拒绝时执行的降级逻辑，为 null 时直接失败
+     */
+    private final Runnable fallback;
+    /**
+     * 只读任务，配置了只读副本时发到副本执行，见 {@link DataSourceRouting}
+     */
+    private final boolean readOnly;
+
+    public static TaskPolicy none() {
+        return NONE;
+    }
+
+    public static TaskPolicy retry(int maxAttempts) {
+        return NONE.withMaxAttempts(maxAttempts);
+    }
+
+    public static TaskPolicy hedge(double percentile) {
+        return NONE.withHedgePercentile(percentile);
+    }
+
+    public boolean isHedged() {
+        return hedgePercentile > 0;
+    }
+
+    /**
+     * 第 attempt 次失败后的退避时间，full jitter：[0, min(max, base * 2^(attempt-1))]
+     */
+    public long backoffMillis(int attempt) {
+        final long cap = Math.min(maxBackoff.toMillis(), baseBackoff.toMillis() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public boolean shouldRetry(int attempt, Throwable e) {
+        return attempt < maxAttempts && retryOn.test(e);
+    }
+
+    /**
+     * 沿 cause 链查找瞬时错误
+     */
+    public static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException
+                    || t instanceof PessimisticLockingFailureException
+                    || t instanceof SQLTransientException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.tran.writebehind;
+
+import com.example.tran.codec.RowCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按 id 合并的写缓冲：同一行的多次更新在内存中合并为一次，由 {@link #flush()} 批量写库
+ * <p>
+ * 更新在该 id 的合并回调内追加到 {@link WriteJournal}，同一 id 的日志顺序与内存合并顺序一致；刷写时在写锁内切换日志段并取快照，
+ * 快照写库成功后才从缓冲移除并删除旧日志段。整批失败时逐行重写：数据本身有问题的行（超长、约束、语法）
+ * 记录日志后丢弃，其余失败的行保留到下次刷写，一行坏数据不会卡住整个缓冲。
+ * 读方通过 {@link #overlay(Object)} 看到尚未落库的值，{@link #sequence()} 可与表版本一起组成 ETag，
+ * 缓冲写入不改变表版本，不会让按版本的缓存失效。
+ *
+ * <pre>
+ * WriteBehindBuffer&lt;User&gt; buffer = new WriteBehindBuffer&lt;&gt;(UserCodecs.USER, User::getId,
+ *         userService::updateBatchById, 10000, journalDirectory, false);
+ * buffer.update(user);
+ * buffer.flush();
+ * </pre>
+ *
+ * @author zyf
+ * @date 2024/06/20
+ */
+@Slf4j
+public final class WriteBehindBuffer<T> implements Closeable {
+
+    private final RowCodec<T> codec;
+    private final Function<T, Long> idOf;
+    private final Consumer<List<T>> writer;
+    private final int maxPending;
+    private final WriteJournal<T> journal;
+
+    private final Map<Long, T> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    /**
+     * 更新持读锁（可并发），刷写切日志段和取快照时持写锁，保证旧段中的记录都在快照里
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param codec            行编解码器，用于合并和写日志
+     * @param idOf             主键
+     * @param writer           批量写库，需要自带事务，抛异常视为整批失败
+     * @param maxPending       缓冲中的 id 数达到该值时，新的更新先同步刷写，刷写失败时拒绝更新
+     * @param journalDirectory 日志目录，null 时不写日志
+     * @param fsync            每条日志是否 fsync
+     */
+    public WriteBehindBuffer(RowCodec<T> codec, Function<T, Long> idOf, Consumer<List<T>> writer,
+                             int maxPending, Path journalDirectory, boolean fsync) {
+        this.codec = codec;
+        this.idOf = idOf;
+        this.writer = writer;
+        this.maxPending = maxPending;
+        this.journal = journalDirectory == null ? null : new WriteJournal<>(journalDirectory, codec.name(), codec, fsync);
+        if (journal != null) {
+            final List<T> rows = journal.replay();
+            rows.forEach(row -> apply(row, false));
+            if (!rows.isEmpty()) {
+                sequence.incrementAndGet();
+                log.info("{} 写缓冲从日志恢复 {} 条更新, {} 行待刷写", codec.name(), rows.size(), pending.size());
+            }
+        }
+    }
+
+    /**
+     * 缓冲一次按 id 更新，null 字段表示不修改
+     *
+     * @throws RuntimeException 缓冲已满且刷写失败，本次更新没有进入缓冲
+     */
+    public void update(T row) {
+        if (idOf.apply(row) == null) {
+            throw new IllegalArgumentException(codec.name() + " 更新缺少主键");
+        }
+        if (pending.size() >= maxPending) {
+            // 先腾出空间再接收，刷写失败时调用方看到的失败是真实的：更新没有被缓冲
+            flush();
+        }
+        final T copy = codec.copy(row);
+        lock.readLock().lock();
+        try {
+            apply(copy, journal != null);
+        } finally {
+            lock.readLock().unlock();
+        }
+        sequence.incrementAndGet();
+    }
+
+    /**
+     * @param row 库中的行，null 表示不存在
+     * @return 叠加缓冲中未落库字段后的副本；没有待写入时原样返回。库中不存在的行仍返回 null，按 id 更新不会插入
+     */
+    public T overlay(T row) {
+        if (row == null) {
+            return null;
+        }
+        final T buffered = pending.get(idOf.apply(row));
+        if (buffered == null) {
+            return row;
+        }
+        final T merged = codec.copy(row);
+        codec.merge(buffered, merged);
+        return merged;
+    }
+
+    public List<T> overlay(List<T> rows) {
+        if (pending.isEmpty()) {
+            return rows;
+        }
+        final List<T> result = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            result.add(overlay(row));
+        }
+        return result;
+    }
+
+    /**
+     * @return 缓冲被更新的次数，只增不减，进程内有效
+     */
+    public long sequence() {
+        return sequence.get();
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+
+    /**
+     * @return 因数据错误被丢弃的行数
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 把当前缓冲按 id 升序整批写库，整批失败时逐行重写
+     *
+     * @return 写入的行数
+     * @throws RuntimeException 整批失败且不是数据错误（如连接失败、锁超时），缓冲和日志原样保留
+     */
+    public synchronized int flush() {
+        final Map<Long, T> snapshot;
+        final long segment;
+        lock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            segment = journal == null ? 0 : journal.rotate();
+            // 按 id 排序，多个实例同时刷写时行锁的获取顺序一致
+            snapshot = new TreeMap<>(pending);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        int written = snapshot.size();
+        boolean complete = true;
+        try {
+            writer.accept(new ArrayList<>(snapshot.values()));
+        } catch (RuntimeException e) {
+            if (!isRowError(e)) {
+                throw e;
+            }
+            log.warn("{} 写缓冲整批 {} 行写入失败, 逐行重写: {}", codec.name(), snapshot.size(), e.getMessage());
+            written = 0;
+            for (Map.Entry<Long, T> entry : new ArrayList<>(snapshot.entrySet())) {
+                try {
+                    writer.accept(List.of(entry.getValue()));
+                    written++;
+                } catch (RuntimeException rowError) {
+                    if (isRowError(rowError)) {
+                        rejected.incrementAndGet();
+                        log.error("{} 写缓冲丢弃无法写入的行 {}", codec.name(), entry.getValue(), rowError);
+                    } else {
+                        // 留在缓冲里下次再写
+                        complete = false;
+                        snapshot.remove(entry.getKey());
+                        log.warn("{} 写缓冲行 {} 写入失败, 下次重试: {}", codec.name(), entry.getKey(), rowError.getMessage());
+                    }
+                }
+            }
+        }
+        // 按 equals 比对：刷写期间又被更新成不同值的行保留到下次，值相同说明已经写进库里（或已丢弃），可以移除
+        snapshot.forEach(pending::remove);
+        if (journal != null && complete) {
+            journal.deleteBefore(segment);
+        }
+        return written;
+    }
+
+    /**
+     * 行本身的数据问题，重试也不会成功：SQLState 22（数据异常，如超长）、23（约束冲突）、42（语法错误，如没有可更新的字段）
+     */
+    static boolean isRowError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && sql.getSQLState() != null) {
+                final String sqlState = sql.getSQLState();
+                return sqlState.startsWith("22") || sqlState.startsWith("23") || sqlState.startsWith("42");
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * @param journaled 为 true 时在合并回调内写日志：同一 id 的合并互斥，日志顺序即合并顺序；写失败时缓冲不变
+     */
+    private void apply(T row, boolean journaled) {
+        pending.compute(idOf.apply(row), (id, old) -> {
+            if (journaled) {
+                journal.append(row);
+            }
+            if (old == null) {
+                return row;
+            }
+            final T merged = codec.copy(old);
+            codec.merge(row, merged);
+            return merged;
+        });
+    }
+}
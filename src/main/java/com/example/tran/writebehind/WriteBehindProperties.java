@@ -0,0 +1,64 @@
+package com.example.tran.writebehind;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 写缓冲配置
+ *
+ * <pre>
+ * tran:
+ *   write-behind:
+ *     enabled: true
+ *     flush-interval: PT1S
+ *     max-pending: 10000
+ *     durability: write
+ *     journal-directory: /data/spring-tran/journal
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "tran.write-behind")
+public class WriteBehindProperties {
+
+    public enum Durability {
+        /**
+         * 不写日志，进程退出前未刷写的更新丢失
+         */
+        NONE,
+        /**
+         * 追加写日志，进程崩溃可恢复，断电可能丢失尚在页缓存中的记录
+         */
+        WRITE,
+        /**
+         * 每条记录写完 fsync，断电也可恢复，单条写入延迟取决于磁盘
+         */
+        FSYNC
+    }
+
+    /**
+     * 关闭时更新直接按 id 写库
+     */
+    private boolean enabled = false;
+
+    /**
+     * 定时刷写间隔
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * 缓冲中的 id 数达到该值时由写入线程同步刷写，限制内存占用和丢失窗口
+     */
+    private int maxPending = 10000;
+
+    private Durability durability = Durability.WRITE;
+
+    /**
+     * 日志目录，不配置时为 java.io.tmpdir 下的 spring-tran/journal
+     */
+    private Path journalDirectory;
+}
@@ -0,0 +1,164 @@
+package com.example.tran.writebehind;
+
+import com.example.tran.codec.BinaryInput;
+import com.example.tran.codec.BinaryOutput;
+import com.example.tran.codec.RowCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 写缓冲的追加日志，按段存放：{name}-{seq}.journal，每条记录为 varint 长度 + {@link RowCodec} 编码的行
+ * <p>
+ * 刷写开始时 {@link #rotate()} 切到新段，刷写成功后删除之前的段；启动时 {@link #replay()} 按段号顺序读回。
+ * 末尾不完整的记录（写到一半进程退出）在回放时丢弃。
+ *
+ * @author zyf
+ * @date 2024/06/20
+ */
+@Slf4j
+final class WriteJournal<T> implements Closeable {
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final String name;
+    private final RowCodec<T> codec;
+    private final boolean fsync;
+    private final BinaryOutput body = new BinaryOutput(256);
+    private final BinaryOutput frame = new BinaryOutput(256);
+
+    private FileChannel channel;
+    private long segment;
+
+    WriteJournal(Path directory, String name, RowCodec<T> codec, boolean fsync) {
+        this.directory = directory;
+        this.name = name;
+        this.codec = codec;
+        this.fsync = fsync;
+    }
+
+    /**
+     * 读回已有的全部记录并打开新段，只在启动时调用一次
+     */
+    synchronized List<T> replay() {
+        final List<T> rows = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            long last = 0;
+            for (Path file : segments()) {
+                last = Math.max(last, sequenceOf(file));
+                read(file, rows);
+            }
+            open(last + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    synchronized void append(T row) {
+        body.reset();
+        codec.write(row, body);
+        frame.reset();
+        frame.writeVarInt(body.size());
+        frame.writeBytes(body.toByteArray(), 0, body.size());
+        final ByteBuffer buf = ByteBuffer.wrap(frame.toByteArray());
+        try {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 关闭当前段并打开下一段
+     *
+     * @return 新段号，该段之前的记录可在刷写成功后用 {@link #deleteBefore(long)} 删除
+     */
+    synchronized long rotate() {
+        try {
+            channel.close();
+            open(segment + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segment;
+    }
+
+    synchronized void deleteBefore(long seq) {
+        try {
+            for (Path file : segments()) {
+                if (sequenceOf(file) < seq) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            // 删除失败只会让下次启动多回放一些已经落库的记录
+            log.warn("清理写缓冲日志失败: {}", directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void open(long seq) throws IOException {
+        segment = seq;
+        channel = FileChannel.open(directory.resolve(String.format("%s-%019d%s", name, seq, SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void read(Path file, List<T> rows) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file);
+        final BinaryInput in = BinaryInput.of(bytes);
+        while (in.hasRemaining()) {
+            final int start = in.position();
+            try {
+                final int length = in.readVarInt();
+                if (in.position() + length > bytes.length) {
+                    log.warn("写缓冲日志 {} 在偏移 {} 处记录不完整，丢弃", file.getFileName(), start);
+                    return;
+                }
+                rows.add(codec.read(in));
+            } catch (RuntimeException e) {
+                log.warn("写缓冲日志 {} 在偏移 {} 处无法解码，丢弃后续记录", file.getFileName(), start, e);
+                return;
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> {
+                        final String fileName = f.getFileName().toString();
+                        return fileName.startsWith(name + "-") && fileName.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long sequenceOf(Path file) {
+        final String fileName = file.getFileName().toString();
+        return Long.parseLong(fileName.substring(name.length() + 1, fileName.length() - SUFFIX.length()));
+    }
+}
@@ -1,17 +1,30 @@
 package com.example.tran;
 
+import com.example.tran.entity.User;
+import com.example.tran.service.UserService;
+import com.example.tran.trace.Span;
+import com.example.tran.trace.SpanCollector;
+import jakarta.servlet.ServletException;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @Slf4j
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -20,6 +33,12 @@ class TestApi {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SpanCollector spanCollector;
+
     @Test
     @DisplayName("test /user/list")
     public void testList() throws Exception {
@@ -44,4 +63,62 @@ class TestApi {
         log.info("调用返回的结果：{}", mvcResult.getResponse().getContentAsString());
     }
 
+    @Test
+    @DisplayName("test /user/list etag")
+    public void testListNotModified() throws Exception {
+        final String etag = mockMvc.perform(MockMvcRequestBuilders.get("/user/list"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/user/list").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        final User user = userService.getById(5L);
+        userService.updateById(user);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/user/list").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    @DisplayName("test /user/check trace")
+    public void testCheckTrace() throws Exception {
+        String traceId = null;
+        performFailingCheck();
+        for (Span root : spanCollector.recentRoots(10)) {
+            if (root.getName().equals("GET /user/check")) {
+                traceId = root.getTraceId();
+                break;
+            }
+        }
+        final List<Span> spans = spanCollector.trace(traceId);
+        assertTrue(spans.stream().anyMatch(span -> span.getName().equals("pksync test")));
+        assertTrue(spans.stream().anyMatch(span -> span.getName().equals("3L")));
+        assertTrue(spans.stream().anyMatch(span -> span.getName().startsWith("sql ")
+                && span.getParentId() != null && !span.getThread().equals(spans.get(0).getThread())));
+    }
+
+    @Test
+    @DisplayName("test /sql/profile")
+    public void testSqlProfile() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.delete("/sql/profile"))
+                .andExpect(MockMvcResultMatchers.status().is2xxSuccessful());
+        performFailingCheck();
+        mockMvc.perform(MockMvcRequestBuilders.get("/sql/profile"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.statements[0].count").isNumber())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.requests[?(@.endpoint == 'GET /user/check')]").exists())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nPlusOne[?(@.endpoint == 'GET /user/check')]").exists())
+                .andDo(MockMvcResultHandlers.print());
+    }
+
+    /**
+     * check() 查询完成后以 1 / 0 结束并回滚，请求以 ArithmeticException 失败
+     */
+    private void performFailingCheck() {
+        final ServletException failure = assertThrows(ServletException.class,
+                () -> mockMvc.perform(MockMvcRequestBuilders.get("/user/check")));
+        assertInstanceOf(ArithmeticException.class, NestedExceptionUtils.getRootCause(failure));
+    }
+
 }
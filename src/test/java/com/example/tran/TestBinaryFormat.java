@@ -0,0 +1,124 @@
+package com.example.tran;
+
+import com.example.tran.codec.BinaryInput;
+import com.example.tran.codec.BinaryOutput;
+import com.example.tran.codec.RowListFormat;
+import com.example.tran.codec.UserCodecs;
+import com.example.tran.config.RowBinaryHttpMessageConverter;
+import com.example.tran.entity.User;
+import com.example.tran.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@SpringBootTest
+@AutoConfigureMockMvc
+class TestBinaryFormat {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    @DisplayName("/user/list negotiates binary by Accept header")
+    void negotiate() throws Exception {
+        MvcResult binary = mockMvc.perform(
+                        MockMvcRequestBuilders.get("/user/list").accept(RowBinaryHttpMessageConverter.MEDIA_TYPE)
+                )
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(RowBinaryHttpMessageConverter.MEDIA_TYPE))
+                .andReturn();
+        final List<User> users = RowListFormat.read(UserCodecs.USER, BinaryInput.of(binary.getResponse().getContentAsByteArray()));
+        assertEquals(userService.findAll(), users);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/user/list"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("a row count larger than the payload is rejected before allocating")
+    void oversizedCount() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowListFormat.write(UserCodecs.USER, List.of(), new BinaryOutput(), out);
+        final byte[] header = out.toByteArray();
+        // 去掉末尾的行数 0，换成 Integer.MAX_VALUE
+        final BinaryOutput forged = new BinaryOutput();
+        forged.writeBytes(header, 0, header.length - 1);
+        forged.writeVarInt(Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class,
+                () -> RowListFormat.read(UserCodecs.USER, BinaryInput.of(forged.toByteArray())));
+    }
+
+    private static List<User> users(int count) {
+        final List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User((long) i, "name" + i, i % 100, "user" + i + "@baomidou.com"));
+        }
+        return users;
+    }
+
+    @Test
+    @DisplayName("binary round-trips and is smaller than json")
+    void roundTrip() throws Exception {
+        final List<User> users = users(1000);
+        users.add(new User(null, null, null, null));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RowListFormat.write(UserCodecs.USER, users, new BinaryOutput(), out);
+        assertEquals(users, RowListFormat.read(UserCodecs.USER, BinaryInput.of(out.toByteArray())));
+        assertTrue(out.size() < objectMapper.writeValueAsBytes(users).length);
+    }
+
+    @Test
+    @Tag("load")
+    @DisplayName("binary vs json serialization benchmark")
+    void benchmark() throws Exception {
+        final List<User> users = users(200_000);
+        final BinaryOutput buf = new BinaryOutput(8 * 1024);
+
+        long jsonBytes = 0;
+        long binaryBytes = 0;
+        long jsonNanos = Long.MAX_VALUE;
+        long binaryNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(16 << 20);
+            long start = System.nanoTime();
+            objectMapper.writeValue(out, users);
+            jsonNanos = Math.min(jsonNanos, System.nanoTime() - start);
+            jsonBytes = out.size();
+
+            out = new ByteArrayOutputStream(16 << 20);
+            start = System.nanoTime();
+            RowListFormat.write(UserCodecs.USER, users, buf, out);
+            binaryNanos = Math.min(binaryNanos, System.nanoTime() - start);
+            binaryBytes = out.size();
+        }
+        log.info("{} 行: json {} ms / {} bytes, binary {} ms / {} bytes", users.size(),
+                jsonNanos / 1_000_000, jsonBytes, binaryNanos / 1_000_000, binaryBytes);
+        assertTrue(binaryBytes < jsonBytes);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.tran;
+
+import com.example.tran.columnar.ColumnarTable;
+import com.example.tran.entity.User;
+import com.example.tran.service.UserSnapshotService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class TestColumnar {
+
+    @Autowired
+    UserSnapshotService userSnapshotService;
+
+    @Test
+    @DisplayName("snapshot of user table")
+    void snapshot() {
+        final ColumnarTable table = userSnapshotService.refreshUser();
+        assertEquals(5, table.size());
+        assertEquals(Map.of("baomidou.com", 5L), table.countByEmailDomain(table.all()));
+        assertEquals(2, table.whereAge(age -> age >= 21).and(table.whereAge(age -> age < 28)).count());
+    }
+
+    @Test
+    @DisplayName("parallel chunk aggregation matches row-by-row result")
+    void multiChunk() {
+        final int rows = ColumnarTable.CHUNK_SIZE * 3 + 17;
+        final List<User> users = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            users.add(new User((long) i, "n" + (i % 100), i % 7 == 0 ? null : i % 90, "u" + i + "@d" + (i % 3) + ".com"));
+        }
+        final ColumnarTable table = ColumnarTable.builder(User::getId, User::getName, User::getAge, User::getEmail)
+                .addAll(users)
+                .build();
+
+        long adults = users.stream().filter(u -> u.getAge() != null && u.getAge() >= 18).count();
+        assertEquals(adults, table.whereAge(age -> age >= 18).count());
+        assertEquals(rows / 100 + (rows % 100 > 5 ? 1 : 0), table.whereName("n5"::equals).count());
+
+        final SortedMap<Integer, Long> histogram = table.ageHistogram(table.all(), 10);
+        assertEquals(users.stream().filter(u -> u.getAge() != null).count(),
+                histogram.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(users.stream().filter(u -> u.getAge() != null && u.getAge() < 10).count(), histogram.get(0));
+
+        final Map<String, Long> domains = table.countByEmailDomain(table.all());
+        assertEquals(users.stream().filter(u -> u.getEmail().endsWith("@d1.com")).count(), domains.get("d1.com"));
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.tran;
+
+import com.example.tran.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 压测：内嵌 Tomcat + H2，固定并发的客户端线程在给定时长内循环请求，输出各接口、各执行方式的吞吐和 p50 / p99
+ * <p>
+ * 默认不执行，mvn -Pload test 运行，参数用系统属性传入：
+ * <ul>
+ *     <li>load.concurrency 并发客户端数，默认 16</li>
+ *     <li>load.duration 每个场景的压测时长，默认 PT10S；load.warmup 预热时长，默认 PT2S</li>
+ *     <li>load.rows user / user2 表灌入的行数，默认 10000，可以到百万级</li>
+ *     <li>load.modes /user/check 的执行方式，默认 bulkhead,async,inline，见 {@link UserService.ExecutorMode}</li>
+ * </ul>
+ * 执行方式是启动配置（tran.check.executor-mode），每种方式单独启动一个应用，共用同一个内存库，
+ * 只有第一个应用执行初始化脚本。
+ * <p>
+ * /user/check 以基线代码的 1 / 0 结束，每个请求都回滚并返回 500，测到的是查询 + 失败回滚路径的耗时。
+ */
+@Slf4j
+@Tag("load")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TestLoad {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 16);
+    private static final Duration DURATION = Duration.parse(System.getProperty("load.duration", "PT10S"));
+    private static final Duration WARMUP = Duration.parse(System.getProperty("load.warmup", "PT2S"));
+    private static final int ROWS = Integer.getInteger("load.rows", 10_000);
+    private static final String MODES = System.getProperty("load.modes", "bulkhead,async,inline");
+
+    /**
+     * 初始化脚本里的数据 id 为 1~5，灌入的数据从 6 开始，结束后删除
+     */
+    private static final int FIRST_SEEDED_ID = 6;
+
+    private ConfigurableApplicationContext app;
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * 启动应用，之前启动的先关闭；PkSync 等静态注册的依赖总是指向当前这个应用
+     */
+    private void start(String mode, boolean initialize) {
+        if (app != null) {
+            app.close();
+        }
+        app = new SpringApplicationBuilder(SpringTranApplication.class)
+                .properties("server.port=0",
+                        "tran.check.executor-mode=" + mode,
+                        "spring.sql.init.mode=" + (initialize ? "always" : "never"))
+                .run();
+        port = ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+    }
+
+    private JdbcTemplate jdbcTemplate() {
+        return app.getBean(JdbcTemplate.class);
+    }
+
+    @BeforeAll
+    void seed() {
+        start(modes().get(0), true);
+        final JdbcTemplate jdbcTemplate = jdbcTemplate();
+        final long start = System.currentTimeMillis();
+        for (String table : List.of("user", "user2")) {
+            // 在库里直接生成，百万行也不用经过 JDBC 批量传输
+            jdbcTemplate.update("insert into `" + table + "` (id, name, age, email)"
+                    + " select x, concat('name', x), mod(x, 100), concat('user', x, '@baomidou.com')"
+                    + " from system_range(?, ?)", FIRST_SEEDED_ID, FIRST_SEEDED_ID + ROWS - 1);
+        }
+        log.info("灌入 user / user2 各 {} 行, 耗时 {} ms", ROWS, System.currentTimeMillis() - start);
+    }
+
+    @AfterAll
+    void report() throws IOException {
+        for (String table : List.of("user", "user2")) {
+            jdbcTemplate().update("delete from `" + table + "` where id >= ?", FIRST_SEEDED_ID);
+        }
+        app.close();
+        final StringBuilder report = new StringBuilder()
+                .append(String.format("concurrency=%d duration=%s rows=%d%n", CONCURRENCY, DURATION, ROWS))
+                .append(String.format("/user/check 以基线的 1 / 0 结束，全部请求回滚并以 5xx 结束，数值为失败路径的耗时%n"))
+                .append(String.format("%-12s %-9s %9s %9s %9s %9s %9s  %s%n",
+                        "endpoint", "mode", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "status"));
+        results.forEach(result -> report.append(result.format()).append(System.lineSeparator()));
+        log.info("压测结果\n{}", report);
+        Files.writeString(Path.of("target", "load-report.txt"), report);
+    }
+
+    private static List<String> modes() {
+        return Arrays.stream(MODES.split(",")).map(String::trim).map(String::toUpperCase).toList();
+    }
+
+    @Test
+    @DisplayName("GET /user/list")
+    void list() throws Exception {
+        final Samples samples = run("/user/list", "-");
+        assertEquals(Set.of(200), samples.statuses.keySet(), "/user/list 状态: " + samples.statuses);
+    }
+
+    @Test
+    @DisplayName("GET /user/check per executor mode")
+    void check() throws Exception {
+        for (String mode : modes()) {
+            if (!mode.equals(app.getEnvironment().getProperty("tran.check.executor-mode"))) {
+                start(mode, false);
+            }
+            final Samples samples = run("/user/check", mode.toLowerCase());
+            // 基线的 1 / 0 让每个请求都以 500 结束；舱壁满时为 503，行锁排队超过截止时间为 504
+            assertTrue(Set.of(500, 503, 504).containsAll(samples.statuses.keySet()), "/user/check 状态: " + samples.statuses);
+        }
+    }
+
+    private Samples run(String path, String mode) throws Exception {
+        final HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        drive(request, WARMUP);
+        final Samples samples = drive(request, DURATION);
+        assertTrue(samples.count > 0, path + " 没有完成任何请求");
+        final Result result = new Result(path, mode, samples);
+        results.add(result);
+        log.info(result.format());
+        return samples;
+    }
+
+    /**
+     * CONCURRENCY 个线程各自同步循环请求，直到时长用完
+     */
+    private Samples drive(HttpRequest request, Duration duration) throws Exception {
+        final ExecutorService workers = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            final long start = System.nanoTime();
+            final long deadline = start + duration.toNanos();
+            final List<Future<Samples>> futures = new ArrayList<>();
+            for (int i = 0; i < CONCURRENCY; i++) {
+                futures.add(workers.submit(() -> {
+                    final Samples samples = new Samples();
+                    while (System.nanoTime() < deadline) {
+                        final long begin = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        }
+                        samples.add(System.nanoTime() - begin, status);
+                    }
+                    return samples;
+                }));
+            }
+            final Samples merged = new Samples();
+            for (Future<Samples> future : futures) {
+                merged.addAll(future.get());
+            }
+            merged.elapsedNanos = System.nanoTime() - start;
+            return merged;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+        private long elapsedNanos;
+
+        void add(long nanos, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count << 1);
+            }
+            latencies[count++] = nanos;
+            statuses.merge(status, 1, Integer::sum);
+        }
+
+        void addAll(Samples other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length << 1, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Integer::sum));
+        }
+
+        double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final int index = Math.min(count - 1, Math.max(0, (int) Math.ceil(percentile * count) - 1));
+            return latencies[index] / 1_000_000.0;
+        }
+    }
+
+    private record Result(String endpoint, String mode, Samples samples) {
+
+        Result {
+            Arrays.sort(samples.latencies, 0, samples.count);
+        }
+
+        String format() {
+            final double seconds = samples.elapsedNanos / 1_000_000_000.0;
+            return String.format("%-12s %-9s %9d %9.1f %9.2f %9.2f %9.2f  %s", endpoint, mode, samples.count,
+                    samples.count / seconds, samples.percentileMillis(0.5), samples.percentileMillis(0.99),
+                    samples.count == 0 ? 0 : samples.latencies[samples.count - 1] / 1_000_000.0, samples.statuses);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.tran;
+
+import com.example.tran.utils.Bulkhead;
+import com.example.tran.utils.BulkheadFullException;
+import com.example.tran.utils.Deadline;
+import com.example.tran.utils.LatencyHistory;
+import com.example.tran.utils.PkSync;
+import com.example.tran.utils.TaskPolicy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestPkSync {
+
+    private static final ExecutorService pool = Executors.newFixedThreadPool(8);
+
+    @AfterAll
+    static void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("transient failures are retried")
+    void retry() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final TaskPolicy policy = TaskPolicy.retry(3).withBaseBackoff(Duration.ofMillis(5));
+        PkSync.of("retry", pool)
+                .add("lock", () -> {
+                    if (attempts.incrementAndGet() < 3) {
+                        throw new CannotAcquireLockException("lock timeout");
+                    }
+                }, policy)
+                .waitAll(5, TimeUnit.SECONDS);
+        assertEquals(3, attempts.get());
+
+        final AtomicInteger other = new AtomicInteger();
+        assertThrows(ExecutionException.class, () -> PkSync.of("retry", pool)
+                .add("npe", () -> {
+                    other.incrementAndGet();
+                    throw new NullPointerException();
+                }, policy)
+                .waitAll(5, TimeUnit.SECONDS));
+        assertEquals(1, other.get());
+    }
+
+    @Test
+    @DisplayName("slow task is hedged after the latency percentile")
+    void hedge() throws Exception {
+        final TaskPolicy policy = TaskPolicy.hedge(0.9);
+        for (int i = 0; i < 20; i++) {
+            PkSync.of("hedge", pool).add("query", () -> sleep(10), policy).waitAll(5, TimeUnit.SECONDS);
+        }
+
+        final AtomicInteger calls = new AtomicInteger();
+        final long start = System.nanoTime();
+        PkSync.of("hedge", pool)
+                .add("query", () -> sleep(calls.incrementAndGet() == 1 ? 3000 : 10), policy)
+                .waitAll(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("bulkhead caps concurrency and rejects or falls back when full")
+    void bulkhead() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead("bulkhead", 1, 1, pool);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Runnable blocking = () -> {
+            maxRunning.accumulateAndGet(bulkhead.getRunning(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        bulkhead.execute(blocking);
+        bulkhead.execute(blocking);
+        assertThrows(BulkheadFullException.class, () -> bulkhead.execute(blocking));
+
+        final AtomicBoolean fellBack = new AtomicBoolean();
+        PkSync.of("bulkhead", bulkhead)
+                .add("full", blocking, TaskPolicy.none().withFallback(() -> fellBack.set(true)))
+                .waitAll(1, TimeUnit.SECONDS);
+        assertTrue(fellBack.get());
+
+        release.countDown();
+        while (bulkhead.getRunning() > 0) {
+            sleep(1);
+        }
+        PkSync.of("bulkhead", bulkhead).add("after", () -> sleep(1)).waitAll(5, TimeUnit.SECONDS);
+        assertEquals(1, maxRunning.get());
+        assertEquals(0, bulkhead.getQueued());
+    }
+
+    @Test
+    @DisplayName("queued task is dropped once the request deadline has passed")
+    void deadline() throws Exception {
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try (Deadline.Scope ignored = Deadline.bind(Deadline.after(Duration.ofMillis(100)))) {
+            final AtomicBoolean ran = new AtomicBoolean();
+            final PkSync sync = PkSync.of("deadline", single)
+                    .add("busy", () -> sleep(300))
+                    .add("doomed", () -> ran.set(true));
+            final long start = System.nanoTime();
+            assertThrows(TimeoutException.class, () -> sync.waitAll(5, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+            sleep(400);
+            assertFalse(ran.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    @DisplayName("latency history keeps only the most recently used task names")
+    void boundedHistory() {
+        final LatencyHistory history = new LatencyHistory(2);
+        history.record("a", 1);
+        history.record("b", 1);
+        history.percentile("a", 0.5, 1);
+        history.record("c", 1);
+        assertEquals(2, history.size());
+        assertTrue(history.percentile("a", 0.5, 1).isPresent());
+        assertFalse(history.percentile("b", 0.5, 1).isPresent());
+    }
+}
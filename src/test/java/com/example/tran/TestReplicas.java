@@ -0,0 +1,107 @@
+package com.example.tran;
+
+import com.example.tran.entity.User;
+import com.example.tran.mapper.UserMapper;
+import com.example.tran.service.UserService;
+import com.example.tran.utils.DataSourceRouting;
+import com.example.tran.utils.PkSync;
+import com.example.tran.utils.TaskPolicy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("replicas")
+class TestReplicas {
+
+    private static final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserMapper userMapper;
+
+    @AfterAll
+    static void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("select database()", String.class);
+    }
+
+    @Test
+    @DisplayName("read-only work is spread over replicas, everything else goes to the primary")
+    void routing() {
+        assertEquals("TEST", database());
+
+        final Set<String> marked = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 4; i++) {
+            marked.add(DataSourceRouting.readOnly(this::database));
+        }
+        assertEquals(Set.of("REPLICA0", "REPLICA1"), marked);
+
+        final Set<String> readOnlyTx = ConcurrentHashMap.newKeySet();
+        final TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        for (int i = 0; i < 4; i++) {
+            readOnlyTx.add(readOnly.execute(status -> database()));
+        }
+        assertEquals(Set.of("REPLICA0", "REPLICA1"), readOnlyTx);
+        assertEquals("TEST", transactionTemplate.execute(status -> database()));
+    }
+
+    @Test
+    @DisplayName("read-only PkSync tasks run on replicas inside their transaction")
+    void readOnlyTasks() {
+        final Set<String> databases = ConcurrentHashMap.newKeySet();
+        final PkSync.MySyncMethod sync = PkSync.sync("replicas", pool);
+        for (int i = 0; i < 4; i++) {
+            sync.add("task" + i, () -> databases.add(database()), TaskPolicy.none().withReadOnly(true));
+        }
+        sync.join(5, TimeUnit.SECONDS);
+        assertEquals(Set.of("REPLICA0", "REPLICA1"), databases);
+
+        final Set<String> primary = ConcurrentHashMap.newKeySet();
+        PkSync.sync("replicas", pool).add("write", () -> primary.add(database())).join(5, TimeUnit.SECONDS);
+        assertEquals(Set.of("TEST"), primary);
+    }
+
+    @Test
+    @DisplayName("findAll reads from a replica, the versioned cache loads from the primary")
+    void findAll() {
+        final User user = userMapper.selectById(1L);
+        final String name = user.getName();
+        user.setName("primary only");
+        userMapper.updateById(user);
+        try {
+            assertEquals(name, userService.findAll().get(0).getName());
+            assertEquals("primary only", userMapper.selectById(1L).getName());
+            // 按版本缓存的列表必须和提交后的版本一致，不能从落后的副本加载
+            assertEquals("primary only", DataSourceRouting.readOnly(userService::findAllCached).get(0).getName());
+        } finally {
+            user.setName(name);
+            userMapper.updateById(user);
+        }
+    }
+}
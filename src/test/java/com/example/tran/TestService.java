@@ -1,16 +1,36 @@
 package com.example.tran;
 
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.example.tran.change.ChangeBatch;
+import com.example.tran.change.ChangeFeed;
+import com.example.tran.change.TableChangeEvent;
+import com.example.tran.entity.User;
+import com.example.tran.mapper.UserMapper;
 import com.example.tran.service.UserService;
+import com.example.tran.utils.PkSync;
+import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+@Slf4j
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
 class TestService {
@@ -18,6 +38,12 @@ class TestService {
     @Autowired
     UserService userService;
 
+    @Autowired
+    ChangeFeed changeFeed;
+
+    @Autowired
+    UserMapper userMapper;
+
     @Test
     @DisplayName("Integration test")
     void contextLoads() {
@@ -25,4 +51,98 @@ class TestService {
         assertEquals("Jone", userService.findAll().get(0).getName());
     }
 
+    @Test
+    @DisplayName("committed writes reach the change feed, rolled back ones do not")
+    void changeFeed() {
+        final long since = changeFeed.lastSequence();
+        final User user = userService.getById(4L);
+        userService.updateBatchById(List.of(user));
+        assertThrows(Exception.class, () -> userService.check());
+
+        final ChangeBatch batch = changeFeed.read(since, "user", 100);
+        assertEquals(1, batch.getChanges().size());
+        assertEquals(TableChangeEvent.Type.UPDATE, batch.getChanges().get(0).getType());
+        assertEquals(4L, batch.getChanges().get(0).getId());
+        assertEquals(user, batch.getChanges().get(0).getRow());
+
+        // 重启前拿到的 seq 比当前的大，要求全量同步
+        final ChangeBatch restarted = changeFeed.read(changeFeed.lastSequence() + 10, "user", 100);
+        assertTrue(restarted.isReset());
+        assertEquals(changeFeed.lastSequence(), restarted.getNext());
+    }
+
+    @Test
+    @DisplayName("sync tasks run in their own transaction on the supplied executor")
+    void syncUsesExecutor() {
+        final ExecutorService pool = Executors.newFixedThreadPool(2, r -> new Thread(r, "supplied-pool"));
+        try {
+            final Set<String> threads = ConcurrentHashMap.newKeySet();
+            PkSync.sync("executor", pool)
+                    .add("a", () -> {
+                        assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+                        threads.add(Thread.currentThread().getName());
+                    })
+                    .add("b", () -> threads.add(Thread.currentThread().getName()))
+                    .join(5, TimeUnit.SECONDS);
+            assertEquals(Set.of("supplied-pool"), threads);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("precompiled statements return the same rows as wrapper queries")
+    void statementTemplates() {
+        assertEquals(userMapper.selectList(Wrappers.<User>lambdaQuery().eq(User::getId, 3L)).get(0), userMapper.selectById(3L));
+        assertEquals(userMapper.selectList(Wrappers.emptyWrapper()), userMapper.selectAll());
+        assertEquals(List.of(userMapper.selectById(1L), userMapper.selectById(2L)), userMapper.selectBatchIds(List.of(1L, 2L)));
+    }
+
+    /**
+     * mvn -Pload test -Dtest=TestService#statementTemplatesBenchmark，每种查询 10000 次取 3 轮最好成绩
+     */
+    @Test
+    @Tag("load")
+    @DisplayName("precompiled by-id statement is faster than a wrapper query, full scan is not slower")
+    void statementTemplatesBenchmark() {
+        final int calls = 10_000;
+        long wrapperNanos = Long.MAX_VALUE;
+        long templateNanos = Long.MAX_VALUE;
+        long wrapperScanNanos = Long.MAX_VALUE;
+        long templateScanNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                userMapper.selectList(Wrappers.<User>lambdaQuery().eq(User::getId, i % 5 + 1L));
+            }
+            wrapperNanos = Math.min(wrapperNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                userMapper.selectById(i % 5 + 1L);
+            }
+            templateNanos = Math.min(templateNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                userMapper.selectList(Wrappers.emptyWrapper());
+            }
+            wrapperScanNanos = Math.min(wrapperScanNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                userMapper.selectAll();
+            }
+            templateScanNanos = Math.min(templateScanNanos, System.nanoTime() - start);
+        }
+        log.info("{} 次: 按 id wrapper {} ms / selectById {} ms, 全表 wrapper {} ms / selectAll {} ms", calls,
+                wrapperNanos / 1_000_000, templateNanos / 1_000_000,
+                wrapperScanNanos / 1_000_000, templateScanNanos / 1_000_000);
+        // 按 id 实测约 0.6 倍；全表扫描以结果映射为主，只要求不更慢，留 10% 抖动余量
+        assertTrue(templateNanos < wrapperNanos * 0.8,
+                "selectById / wrapper = " + (double) templateNanos / wrapperNanos);
+        assertTrue(templateScanNanos < wrapperScanNanos * 1.1,
+                "selectAll / wrapper = " + (double) templateScanNanos / wrapperScanNanos);
+    }
+
 }
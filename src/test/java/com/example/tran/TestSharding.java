@@ -0,0 +1,95 @@
+package com.example.tran;
+
+import com.example.tran.entity.User;
+import com.example.tran.mapper.UserMapper;
+import com.example.tran.service.ShardedUserService;
+import com.example.tran.shard.ShardTemplate;
+import com.example.tran.shard.ShardedTable;
+import com.example.tran.utils.DataSourceRouting;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("shards")
+class TestSharding {
+
+    @Autowired
+    ShardTemplate shardTemplate;
+
+    @Autowired
+    ShardedUserService shardedUserService;
+
+    @Autowired
+    UserMapper userMapper;
+
+    private List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    @Test
+    @DisplayName("rows are split by id across shards and merged back in id order")
+    void scatterGather() {
+        assertEquals(3, shardTemplate.count());
+        for (int shard = 0; shard < 3; shard++) {
+            final int index = shard;
+            final List<User> rows = DataSourceRouting.onShard(shard, () -> userMapper.selectAll());
+            assertTrue(rows.stream().allMatch(user -> user.getId() % 3 == index));
+        }
+
+        final ShardedTable<User> user = shardedUserService.user();
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(user.findAll()));
+        assertEquals(List.of(2L, 4L, 5L), ids(user.findByIds(List.of(5L, 2L, 4L))));
+        assertEquals("Tom", user.findById(3L).getName());
+
+        assertEquals(List.of(1L, 2L), ids(user.listAfter(null, 2)));
+        assertEquals(List.of(3L, 4L), ids(user.listAfter(2L, 2)));
+        assertEquals(List.of(5L), ids(user.listAfter(4L, 2)));
+        assertEquals(List.of(3L, 4L), ids(user.page(2, 2)));
+        assertEquals(List.of(5L), ids(user.page(3, 2)));
+
+        for (int limit : new int[]{0, -1, ShardedTable.MAX_PAGE_SIZE + 1}) {
+            assertThrows(IllegalArgumentException.class, () -> user.listAfter(null, limit));
+        }
+        // 分片返回 null 不算没有返回
+        assertEquals(3, shardTemplate.scatter("nulls", shard -> null).size());
+    }
+
+    @Test
+    @DisplayName("writes land on the shard that owns the id")
+    void write() {
+        final ShardedTable<User> user = shardedUserService.user();
+        user.save(new User(9L, "Nine", 9, "nine@baomidou.com"));
+        try {
+            assertEquals("Nine", DataSourceRouting.onShard(0, () -> userMapper.selectById(9L)).getName());
+            assertNull(DataSourceRouting.onShard(1, () -> userMapper.selectById(9L)));
+            user.save(new User(9L, "Nine!", 9, "nine@baomidou.com"));
+            assertEquals("Nine!", user.findById(9L).getName());
+        } finally {
+            assertTrue(user.deleteById(9L));
+        }
+        assertNull(user.findById(9L));
+    }
+
+    @Test
+    @DisplayName("k-way merge with skip and limit")
+    void mergeSorted() {
+        final List<List<Integer>> parts = List.of(List.of(1, 4, 7), List.of(2, 5), List.of(), List.of(3, 6, 8, 9));
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9),
+                ShardTemplate.mergeSorted(parts, Comparator.naturalOrder(), 0, Integer.MAX_VALUE));
+        assertEquals(List.of(4, 5, 6), ShardTemplate.mergeSorted(parts, Comparator.naturalOrder(), 3, 3));
+        assertEquals(new ArrayList<>(), ShardTemplate.mergeSorted(parts, Comparator.naturalOrder(), 9, 3));
+        assertThrows(IllegalArgumentException.class, () -> ShardTemplate.mergeSorted(parts, Comparator.naturalOrder(), 0, -1));
+    }
+}
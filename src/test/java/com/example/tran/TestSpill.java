@@ -0,0 +1,79 @@
+package com.example.tran;
+
+import com.example.tran.codec.BinaryInput;
+import com.example.tran.codec.BinaryOutput;
+import com.example.tran.codec.MappedSpill;
+import com.example.tran.codec.UserCodecs;
+import com.example.tran.entity.User;
+import com.example.tran.service.UserService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(properties = "tran.spill.directory=target/spill-test")
+@AutoConfigureMockMvc
+class TestSpill {
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    @DisplayName("codec round trip keeps nulls and non-ascii text")
+    void codec() {
+        final User user = new User(-42L, "张三", null, "zs@例子.com");
+        final BinaryOutput out = new BinaryOutput(4);
+        UserCodecs.USER.write(user, out);
+        UserCodecs.USER.write(new User(Long.MAX_VALUE, null, Integer.MIN_VALUE, ""), out);
+
+        final BinaryInput in = BinaryInput.of(out.toByteArray());
+        assertEquals(user, UserCodecs.USER.read(in));
+        assertEquals(new User(Long.MAX_VALUE, null, Integer.MIN_VALUE, ""), UserCodecs.USER.read(in));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("spilled result iterates the same rows and removes its file")
+    void spill() {
+        final Path file;
+        try (MappedSpill<User> users = userService.findAllSpilled()) {
+            file = users.file();
+            final List<User> rows = new ArrayList<>();
+            users.forEach(rows::add);
+            assertEquals(userService.findAll(), rows);
+            assertEquals(rows.size(), users.size());
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    @DisplayName("export streams ndjson from the configured directory and leaves no file behind")
+    void export() throws Exception {
+        final MvcResult started = mockMvc.perform(MockMvcRequestBuilders.get("/user/export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(started))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        assertEquals(userService.findAll().size(), started.getResponse().getContentAsString().split("\n").length);
+        try (Stream<Path> files = Files.list(Path.of("target/spill-test"))) {
+            assertEquals(0, files.count());
+        }
+    }
+}
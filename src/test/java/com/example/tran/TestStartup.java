@@ -0,0 +1,118 @@
+package com.example.tran;
+
+import jakarta.servlet.ServletException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * startup profile（懒加载）下的冒烟请求，以及启动耗时对比
+ * <p>
+ * 耗时对比每种方式启动独立的 JVM，refresh 完成后退出，取进程总耗时（含 JVM 启动和类加载）。
+ * 先 mvn -Pstartup package -DskipTests 生成 target/startup，再
+ * mvn test -Dtest=TestStartup -Dstartup.benchmark=true
+ */
+@Slf4j
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("startup")
+class TestStartup {
+
+    private static final Path DIR = Path.of("target", "startup");
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    /**
+     * 退出在 onRefresh 的启动测试不会处理请求，懒加载下只在请求时才暴露的问题（如静态注入没有发生）靠这里发现
+     */
+    @Test
+    @DisplayName("requests work under lazy initialization")
+    void smoke() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/user/list"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        // 走 PkSync 子线程事务，最后以 1 / 0 回滚
+        final ServletException failure = assertThrows(ServletException.class,
+                () -> mockMvc.perform(MockMvcRequestBuilders.get("/user/check")));
+        assertInstanceOf(ArithmeticException.class, NestedExceptionUtils.getRootCause(failure));
+        mockMvc.perform(MockMvcRequestBuilders.get("/traces"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.name == 'GET /user/check')]").exists());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "startup.benchmark", matches = "true")
+    @DisplayName("startup time: eager vs lazy vs AOT vs CDS")
+    void startup() throws Exception {
+        final Path jar;
+        try (Stream<Path> files = Files.list(DIR)) {
+            jar = files.filter(file -> file.getFileName().toString().endsWith("-startup.jar")).findFirst().orElse(null);
+        } catch (IOException e) {
+            assumeTrue(false, "先执行 mvn -Pstartup package -DskipTests");
+            return;
+        }
+        assumeTrue(jar != null && Files.exists(DIR.resolve("app.jsa")), "先执行 mvn -Pstartup package -DskipTests");
+
+        final Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("eager", List.of());
+        variants.put("lazy", List.of("-Dspring.profiles.active=startup"));
+        variants.put("lazy + aot", List.of("-Dspring.profiles.active=startup", "-Dspring.aot.enabled=true"));
+        variants.put("lazy + aot + cds", List.of("-Dspring.profiles.active=startup", "-Dspring.aot.enabled=true",
+                "-XX:SharedArchiveFile=app.jsa"));
+
+        final Map<String, Long> best = new LinkedHashMap<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+                final long millis = run(jar.getFileName().toString(), variant.getValue());
+                best.merge(variant.getKey(), millis, Math::min);
+            }
+        }
+        best.forEach((name, millis) -> log.info("{}: {} ms", name, millis));
+        assertTrue(best.get("lazy + aot + cds") < best.get("eager"));
+    }
+
+    private static long run(String jar, List<String> jvmArgs) throws Exception {
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-Dspring.context.exit=onRefresh");
+        command.add("-jar");
+        command.add(jar);
+        final long start = System.nanoTime();
+        final Process process = new ProcessBuilder(command)
+                .directory(DIR.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES), "启动超时: " + command);
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(0, process.exitValue(), "启动失败: " + command);
+        return millis;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.tran;
+
+import com.example.tran.change.TableVersions;
+import com.example.tran.codec.UserCodecs;
+import com.example.tran.entity.User;
+import com.example.tran.mapper.UserMapper;
+import com.example.tran.service.UserService;
+import com.example.tran.service.UserWriteBehindService;
+import com.example.tran.writebehind.WriteBehindBuffer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "tran.write-behind.enabled=true",
+        "tran.write-behind.flush-interval=PT1H",
+        "tran.write-behind.journal-directory=target/write-behind-journal"
+})
+class TestWriteBehind {
+
+    @Autowired
+    UserWriteBehindService userWriteBehindService;
+
+    @Autowired
+    UserMapper userMapper;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    UserService userService;
+
+    private static User user(long id, String name, Integer age) {
+        final User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setAge(age);
+        return user;
+    }
+
+    @Test
+    @DisplayName("updates to one id coalesce in the buffer, readers see them before the flush")
+    void coalesce() {
+        userMapper.insert(user(1000L, "Before", 20));
+        try {
+            final long version = tableVersions.version(User.class);
+            final String etag = userWriteBehindService.etag();
+            userWriteBehindService.update(user(1000L, "After", null));
+            userWriteBehindService.update(user(1000L, null, 30));
+            assertEquals(1, userWriteBehindService.pending());
+            // 缓冲写入不动表版本（列表缓存保留），ETag 随缓冲序号变化
+            assertEquals(version, tableVersions.version(User.class));
+            assertNotEquals(etag, userWriteBehindService.etag());
+
+            assertEquals("Before", userMapper.selectById(1000L).getName());
+            final User buffered = userWriteBehindService.getById(1000L);
+            assertEquals("After", buffered.getName());
+            assertEquals(30, buffered.getAge());
+            assertEquals(buffered, userWriteBehindService.findAll().stream()
+                    .filter(u -> u.getId() == 1000L).findFirst().orElseThrow());
+
+            assertEquals(1, userWriteBehindService.flush());
+            assertEquals(0, userWriteBehindService.pending());
+            final User stored = userMapper.selectById(1000L);
+            assertEquals("After", stored.getName());
+            assertEquals(30, stored.getAge());
+        } finally {
+            userMapper.deleteById(1000L);
+        }
+    }
+
+    @Test
+    @DisplayName("unflushed updates are replayed from the journal, a torn tail record is dropped")
+    void replay(@TempDir Path dir) throws Exception {
+        final WriteBehindBuffer<User> crashed = new WriteBehindBuffer<>(UserCodecs.USER, User::getId,
+                rows -> {
+                    throw new IllegalStateException("db down");
+                }, 100, dir, true);
+        crashed.update(user(1L, "A", null));
+        crashed.update(user(1L, null, 7));
+        crashed.update(user(2L, "B", 8));
+        assertThrows(IllegalStateException.class, crashed::flush);
+        assertEquals(2, crashed.pending());
+        crashed.close();
+
+        try (var files = Files.list(dir)) {
+            final Path last = files.sorted().reduce((a, b) -> b).orElseThrow();
+            Files.write(last, new byte[]{20, 1, 2}, StandardOpenOption.APPEND);
+        }
+
+        final List<User> written = new ArrayList<>();
+        final WriteBehindBuffer<User> restarted = new WriteBehindBuffer<>(UserCodecs.USER, User::getId,
+                written::addAll, 100, dir, true);
+        assertEquals(2, restarted.pending());
+        assertEquals(2, restarted.flush());
+        assertEquals(user(1L, "A", 7), written.get(0));
+        assertEquals(user(2L, "B", 8), written.get(1));
+        restarted.close();
+
+        final WriteBehindBuffer<User> clean = new WriteBehindBuffer<>(UserCodecs.USER, User::getId,
+                written::addAll, 100, dir, true);
+        assertEquals(0, clean.pending());
+        clean.close();
+    }
+
+    @Test
+    @DisplayName("empty and oversized updates are rejected before buffering")
+    void validation() {
+        assertThrows(IllegalArgumentException.class, () -> userWriteBehindService.update(user(1L, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> userWriteBehindService.update(user(1L, "x".repeat(31), null)));
+        assertEquals(0, userWriteBehindService.pending());
+    }
+
+    @Test
+    @DisplayName("a row the database rejects is dropped, the rest of the batch is written")
+    void badRow(@TempDir Path dir) throws Exception {
+        userMapper.insert(user(1001L, "A", 1));
+        userMapper.insert(user(1002L, "B", 2));
+        try (WriteBehindBuffer<User> buffer = new WriteBehindBuffer<>(UserCodecs.USER, User::getId,
+                userService::updateBatchById, 100, dir, false)) {
+            buffer.update(user(1001L, "A2", null));
+            buffer.update(user(1002L, "x".repeat(31), null));
+            assertEquals(1, buffer.flush());
+            assertEquals(0, buffer.pending());
+            assertEquals(1, buffer.rejected());
+            assertEquals("A2", userMapper.selectById(1001L).getName());
+            assertEquals("B", userMapper.selectById(1002L).getName());
+        } finally {
+            userMapper.deleteBatchIds(List.of(1001L, 1002L));
+        }
+    }
+
+    @Test
+    @DisplayName("transient failures keep the buffer, a full buffer refuses new updates instead of losing them")
+    void transientFailure() throws Exception {
+        try (WriteBehindBuffer<User> buffer = new WriteBehindBuffer<>(UserCodecs.USER, User::getId,
+                rows -> {
+                    throw new CannotAcquireLockException("lock timeout");
+                }, 1, null, false)) {
+            buffer.update(user(1L, "A", null));
+            assertThrows(CannotAcquireLockException.class, buffer::flush);
+            assertThrows(CannotAcquireLockException.class, () -> buffer.update(user(2L, "B", null)));
+            assertEquals(1, buffer.pending());
+            assertEquals(0, buffer.rejected());
+        }
+    }
+}